@@ -0,0 +1,91 @@
+package org.lappsgrid.mate_tools_lapps;
+
+import org.lappsgrid.morph_analyzer_common.BoundedCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes Mate morph tags into {@link MateMorphFeatures}. A language has a few
+ * hundred distinct tags at most, so the decoded form is cached per tag string
+ * and repeated tags cost one lookup. Feature names and values are interned in
+ * a private pool, so all cached entries share the same few strings.
+ *
+ * The cache size is set with {@code -Dmatetools.morph.cache.size} (default
+ * 10000, 0 disables caching).
+ */
+public final class MateMorphDecoder {
+
+    private static final int cacheSize = Integer.getInteger("matetools.morph.cache.size", 10000);
+
+    // Keeps the pool from growing without bound on unusual input
+    private static final int MAX_POOLED = 4096;
+
+    private static final BoundedCache<String, MateMorphFeatures> cache =
+            cacheSize > 0 ? new BoundedCache<>(cacheSize) : null;
+
+    private static final ConcurrentMap<String, String> pool = new ConcurrentHashMap<>();
+
+    private MateMorphDecoder() {
+    }
+
+    /**
+     * Features of a tag of {@code name=value} pairs separated by {@code |}. The
+     * empty tag {@code _} has none; pieces without a value are skipped.
+     */
+    public static MateMorphFeatures decode(String morphTag) {
+        if (morphTag == null || morphTag.equals("_")) {
+            return MateMorphFeatures.NONE;
+        }
+        return cache == null ? parse(morphTag) : cache.get(morphTag, MateMorphDecoder::parse);
+    }
+
+    /** The tag cache, or {@code null} when caching is disabled. */
+    public static BoundedCache<String, MateMorphFeatures> getCache() {
+        return cache;
+    }
+
+    static MateMorphFeatures parse(String morphTag) {
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        int length = morphTag.length();
+        int start = 0;
+        while (start < length) {
+            int end = morphTag.indexOf('|', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = morphTag.indexOf('=', start);
+            if (equals >= 0 && equals < end) {
+                // Like split("="), a second '=' ends the value
+                int valueEnd = morphTag.indexOf('=', equals + 1);
+                if (valueEnd < 0 || valueEnd > end) {
+                    valueEnd = end;
+                }
+                if (valueEnd > equals + 1) {
+                    names.add(intern(morphTag.substring(start, equals)));
+                    values.add(intern(morphTag.substring(equals + 1, valueEnd)));
+                }
+            }
+            start = end + 1;
+        }
+        if (names.isEmpty()) {
+            return MateMorphFeatures.NONE;
+        }
+        return new MateMorphFeatures(names.toArray(new String[0]), values.toArray(new String[0]));
+    }
+
+    private static String intern(String s) {
+        String pooled = pool.get(s);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (pool.size() >= MAX_POOLED) {
+            return s;
+        }
+        pooled = pool.putIfAbsent(s, s);
+        return pooled == null ? s : pooled;
+    }
+}
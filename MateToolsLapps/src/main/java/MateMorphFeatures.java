@@ -0,0 +1,54 @@
+package org.lappsgrid.mate_tools_lapps;
+
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The decoded features of one Mate morph tag such as
+ * {@code case=nom|number=pl|gender=*|person=1}, in tag order. Instances are
+ * immutable and shared by every token with the same tag.
+ */
+public final class MateMorphFeatures {
+
+    static final MateMorphFeatures NONE = new MateMorphFeatures(new String[0], new String[0]);
+
+    private final String[] names;
+    private final String[] values;
+    private final Map<String, String> map;
+
+    MateMorphFeatures(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+        Map<String, String> features = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            features.put(names[i], values[i]);
+        }
+        map = Collections.unmodifiableMap(features);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    public String getValue(int i) {
+        return values[i];
+    }
+
+    /** Read-only name to value view; a name repeated in the tag keeps its last value. */
+    public Map<String, String> asMap() {
+        return map;
+    }
+
+    public void writeTo(TokenSink sink) {
+        for (int i = 0; i < names.length; i++) {
+            sink.addFeature(names[i], values[i]);
+        }
+    }
+}
@@ -31,8 +31,6 @@ import org.apache.uima.fit.factory.JCasFactory;
 
 // import org.junit.Assume.*;
 
-import de.tudarmstadt.ukp.dkpro.core.testing.*;
-
 import org.apache.commons.io.FileUtils;
 import org.apache.uima.cas.impl.CASImpl;
 import org.apache.uima.cas.impl.FeatureStructureImplC;
@@ -42,8 +40,6 @@ import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.*;
 
 import static org.lappsgrid.discriminator.Discriminators.Uri;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
@@ -52,30 +48,159 @@ import org.lappsgrid.vocabulary.Features;
 // additional API for metadata
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
-
-import de.tudarmstadt.ukp.dkpro.core.testing.*;
+import org.lappsgrid.morph_analyzer_common.AdmissionConfig;
+import org.lappsgrid.morph_analyzer_common.AdmissionController;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.BatchMorphService;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.ResultCache;
+import org.lappsgrid.morph_analyzer_common.SharedTypeSystem;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.morph_analyzer_common.WorkerThreads;
 
 import de.tudarmstadt.ukp.dkpro.core.matetools.MateMorphTagger;
 
 import is2.mtag.Tagger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.ExecutorService;
 
-public class MateMorphTaggerLapps implements ProcessingService {
+public class MateMorphTaggerLapps extends MorphAnalyzerService implements ProcessingService, BatchMorphService {
 
     private String metadata;
 
-    private JCas createJCas(String language, String document) throws org.apache.uima.UIMAException{
-        AnalysisEngineDescription lemma = createEngineDescription(MateLemmatizer.class);
-        AnalysisEngineDescription morphTag = createEngineDescription(MateMorphTagger.class);
-        AnalysisEngineDescription posTag = createEngineDescription(MatePosTagger.class);
+    private static final String[] LANGUAGES = {"de", "es", "fr"};
+
+    // Each aggregate holds the lemmatizer, tagger and morph tagger models for one language.
+    // Aggregates are built lazily on first use and lent to one request at a time.
+    private static final EnginePool engines = new EnginePool(MateMorphTaggerLapps::createAggregate,
+            EnginePoolConfig.fromSystemProperties("matetools.pool"));
+
+    public static AnalysisEngine createAggregate(EngineKey key) throws ResourceInitializationException {
+        String language = key.getLanguage();
+        TypeSystemDescription typeSystem = SharedTypeSystem.get();
+        AnalysisEngineDescription lemma = createEngineDescription(MateLemmatizer.class, typeSystem,
+                MateLemmatizer.PARAM_LANGUAGE, language);
+        AnalysisEngineDescription morphTag = createEngineDescription(MateMorphTagger.class, typeSystem,
+                MateMorphTagger.PARAM_LANGUAGE, language);
+        AnalysisEngineDescription posTag = createEngineDescription(MatePosTagger.class, typeSystem,
+                MatePosTagger.PARAM_LANGUAGE, language);
 
         AnalysisEngineDescription aggregate = createEngineDescription(lemma, posTag, morphTag);
-        AnalysisEngine aEngine = createEngine(aggregate);
-        return TestRunner.runTest(aEngine, language, document);
+        return createEngine(aggregate);
+    }
+
+    private static void shutdownEngines() {
+        synchronized (MateMorphTaggerLapps.class) {
+            if (workers != null) {
+                workers.shutdownNow();
+                workers = null;
+            }
+        }
+        admission.close();
+        engines.close();
+    }
+
+    @Override
+    public List<String> getLanguages() {
+        return Arrays.asList(LANGUAGES);
+    }
+
+    @Override
+    public EnginePool getEnginePool() {
+        return engines;
+    }
+
+    @Override
+    protected AnalysisRunner getRunner() {
+        return runner;
+    }
+
+    @Override
+    protected AdmissionController getAdmission() {
+        return admission;
+    }
+
+    @Override
+    protected ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /** Batch documents run on {@code matetools.parallel.workers} threads. */
+    @Override
+    protected ExecutorService getBatchWorkers() {
+        return getWorkers();
+    }
+
+    @Override
+    protected String getProducerType() {
+        return "MateTools";
+    }
+
+    // Requests are "lang; text"; the Mate models are selected by language alone
+    @Override
+    protected boolean hasVariant() {
+        return false;
+    }
+
+    private static final AnalysisRunner runner = AnalysisRunner.fromSystemProperties("matetools");
+
+    // Bounds concurrent and queued requests per (language, variant); overload is rejected at once
+    private static final AdmissionController admission = new AdmissionController("matetools",
+            AdmissionConfig.fromSystemProperties("matetools.admission"));
+
+    // Resubmitted documents are answered from here; off unless matetools.resultCache.size is set
+    private static final ResultCache resultCache = ResultCache.fromSystemProperties("matetools");
+
+    // The Mate models are CPU bound, so requests and batch documents stay on bounded platform pools
+    private static final int parallelWorkers = Integer.getInteger("matetools.parallel.workers",
+            Runtime.getRuntime().availableProcessors());
+
+    private static volatile ExecutorService workers;
+
+    private static ExecutorService getWorkers() {
+        if (workers == null) {
+            synchronized (MateMorphTaggerLapps.class) {
+                if (workers == null) {
+                    workers = WorkerThreads.newExecutor("matetools-worker", parallelWorkers, false);
+                }
+            }
+        }
+        return workers;
+    }
+
+    /**
+     * Stops the batch workers and destroys all cached Mate aggregates. The pool is shared by every instance and
+     * cannot be reopened, so this is the bean's destroy method, called once when the web application is undeployed.
+     */
+    @Override
+    public void shutdown() {
+        shutdownEngines();
+    }
+
+    @Override
+    protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+        int id = -1;
+        for (Token tok : JCasUtil.select(jCas, Token.class)) {
+            int start = tok.getBegin();
+            int end = tok.getEnd();
+            sink.startToken(++id, -1, start, end);
+            String word = text.substring(start, end);
+            sink.addFeature(Features.Token.WORD, word);
+            sink.addFeature(Features.Token.LEMMA, tok.getLemmaValue());
+            sink.addFeature(Features.Token.POS, tok.getPosValue());
+            MorphologicalFeatures morphFeatures = tok.getMorph();
+            String morphFeatValue = morphFeatures.getValue();
+            sink.addFeature("morph_tag", morphFeatValue);
+            MateMorphDecoder.decode(morphFeatValue).writeTo(sink);
+            sink.endToken();
+        }
     }
 
     public MateMorphTaggerLapps() {
@@ -98,17 +223,17 @@ public class MateMorphTaggerLapps implements ProcessingService {
         IOSpecification requires = new IOSpecification();
         requires.addFormat(Uri.TEXT);
         requires.addFormat(Uri.LIF);
-        requires.addLanguage("de");
-        requires.addLanguage("es");
-        requires.addLanguage("fr");
+        for (String language : LANGUAGES) {
+            requires.addLanguage(language);
+        }
         requires.setEncoding("UTF-8");
 
         IOSpecification produces = new IOSpecification();
         produces.addFormat(Uri.LAPPS);
         produces.addAnnotation(Uri.TOKEN);
-        produces.addLanguage("de");
-        produces.addLanguage("es");
-        produces.addLanguage("fr");
+        for (String language : LANGUAGES) {
+            produces.addLanguage(language);
+        }
         produces.setEncoding("UTF-8");
 
         metadata.setRequires(requires);
@@ -122,84 +247,4 @@ public class MateMorphTaggerLapps implements ProcessingService {
     public String getMetadata() {
         return metadata;
     }
-
-    @Override
-    public String execute(String input) {
-        try {
-            String[] lang_text = input.split("; ");
-            Data input_text = new Data<>(Uri.TEXT, lang_text[1].trim());
-            Data data = Serializer.parse(input_text.asJson(), Data.class);
-            final String discriminator = data.getDiscriminator();
-            if (discriminator.equals(Uri.ERROR)) {
-                return input;
-            }
-
-            Container container = null;
-            if (discriminator.equals(Uri.TEXT)) {
-                container = new Container();
-                container.setText(data.getPayload().toString());
-            } else if (discriminator.equals(Uri.LAPPS)) {
-                container = new Container((Map) data.getPayload());
-            } else {
-                String message = String.format("Unsupported discriminator type: %s", discriminator);
-                return new Data<String>(Uri.ERROR, message).asJson();
-            }
-
-            View view = container.newView();
-            String text = container.getText();
-            // String[] words = text.trim().split("\\s+");
-            // org.lappsgrid.mate_tools_lapps.MateMorphTaggerLAPPS.setJCas(aLanguage, aText);
-            // System.out.println(jCas.getDocumentLanguage());
-            try {
-
-                // TokenBuilder<Token, Sentence> tb = new TokenBuilder<Token, Sentence>(Token.class,
-                //    Sentence.class);
-                // tb.buildTokens(jCas, aText);
-                JCas newCas = createJCas(lang_text[0], lang_text[1].trim());
-                // System.out.println(ae.getAnalysisEngineMetaData());
-                int id = -1;
-                for (Token tok : JCasUtil.select(newCas, Token.class)) {
-                    int start = tok.getBegin();
-                    int end = tok.getEnd();
-                    Annotation a = view.newAnnotation("tok" + (++id), Uri.TOKEN, start, end);
-                    String word = text.substring(start, end);
-                    a.addFeature(Features.Token.WORD, word);
-                    a.addFeature(Features.Token.LEMMA, tok.getLemmaValue());
-                    a.addFeature(Features.Token.POS, tok.getPosValue());
-                    MorphologicalFeatures morphFeatures = tok.getMorph();
-                    String morphFeatValue = morphFeatures.getValue();
-                    a.addFeature("morph_tag", morphFeatValue);
-                    if (!morphFeatValue.equals("_")) {
-                        String[] morphFeatSplit;
-                        if (morphFeatValue.contains("|")) {
-                            morphFeatSplit = morphFeatValue.split("\\|");
-                        }else{
-                            String[] oneLength = new String[1];
-                            oneLength[0] = morphFeatValue;
-                            morphFeatSplit = oneLength;
-                        }
-                        for (String morphFeat : morphFeatSplit) {
-                            String[] individualFeat = morphFeat.split("=");
-                            a.addFeature(individualFeat[0], individualFeat[1]);
-                        }
-                    }
-                }
-                view.addContains(Uri.TOKEN, this.getClass().getName(), "MateTools");
-
-                data = new DataContainer(container);
-
-                return data.asPrettyJson();
-
-            } catch (UIMAException e2) {
-                System.out.println("failed");
-                e2.printStackTrace();
-                return "failed";
-            }
-        } catch (PatternSyntaxException e) {
-            String errString = "Invalid input pattern";
-            System.err.println(errString);
-            e.printStackTrace();
-            return errString;
-        }
-    }
 }
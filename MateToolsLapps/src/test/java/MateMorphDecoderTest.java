@@ -0,0 +1,49 @@
+import org.junit.Test;
+import org.lappsgrid.mate_tools_lapps.MateMorphDecoder;
+import org.lappsgrid.mate_tools_lapps.MateMorphFeatures;
+
+import static org.junit.Assert.*;
+
+public class MateMorphDecoderTest
+{
+    @Test
+    public void testTagIsSplitIntoFeatures() {
+        MateMorphFeatures features = MateMorphDecoder.decode("case=nom|number=pl|gender=*|person=1");
+        assertEquals(4, features.size());
+        assertEquals("case", features.getName(0));
+        assertEquals("nom", features.getValue(0));
+        assertEquals("*", features.asMap().get("gender"));
+        assertEquals("1", features.asMap().get("person"));
+
+        MateMorphFeatures single = MateMorphDecoder.decode("postype=proper");
+        assertEquals(1, single.size());
+        assertEquals("proper", single.asMap().get("postype"));
+    }
+
+    @Test
+    public void testEmptyAndMalformedTags() {
+        assertEquals(0, MateMorphDecoder.decode("_").size());
+        assertEquals(0, MateMorphDecoder.decode(null).size());
+        MateMorphFeatures features = MateMorphDecoder.decode("g=m||n|s=|p=1=x");
+        assertEquals(2, features.size());
+        assertEquals("m", features.asMap().get("g"));
+        // As with split("="), the value ends at a second '='
+        assertEquals("1", features.asMap().get("p"));
+    }
+
+    @Test
+    public void testRepeatedTagsAreShared() {
+        MateMorphFeatures first = MateMorphDecoder.decode("g=f|n=s|s=c");
+        MateMorphFeatures second = MateMorphDecoder.decode(new String("g=f|n=s|s=c"));
+        assertSame("Decoded tag not cached", first, second);
+
+        MateMorphFeatures other = MateMorphDecoder.decode("g=f|n=p|s=c");
+        assertSame("Feature names not interned", first.getName(0), other.getName(0));
+        assertSame("Feature values not interned", first.getValue(0), other.getValue(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFeatureMapIsImmutable() {
+        MateMorphDecoder.decode("m=ind|n=p|p=1|t=pst").asMap().put("t", "pres");
+    }
+}
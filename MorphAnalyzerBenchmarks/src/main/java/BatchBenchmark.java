@@ -0,0 +1,53 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.serialization.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch throughput in documents per second: one-sentence documents of the
+ * same language tagged through {@code executeBatch}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    private static final int BATCH_SIZE = 32;
+
+    private List<BatchDocument> documents;
+
+    @Setup(Level.Trial)
+    public void setUp(TargetState target) {
+        List<String> sentences = Samples.sentences(target.getLanguage());
+        documents = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            documents.add(new BatchDocument("d" + i, target.getKey().getLanguage(), target.getKey().getVariant(),
+                    sentences.get(i % sentences.size())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Data[] executeBatch(TargetState target) {
+        return target.getService().executeBatch(documents);
+    }
+}
@@ -0,0 +1,46 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start: building an engine and loading its model in a fresh JVM, i.e.
+ * the latency of the first request for a language.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class EngineConstructionBenchmark {
+
+    private AnalysisEngine engine;
+
+    @Benchmark
+    public AnalysisEngine construct(TargetState target) throws ResourceInitializationException {
+        engine = target.getFactory().create(target.getKey());
+        return engine;
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() {
+        if (engine != null) {
+            engine.destroy();
+            engine = null;
+        }
+    }
+}
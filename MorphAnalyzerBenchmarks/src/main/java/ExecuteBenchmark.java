@@ -0,0 +1,40 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm single-document {@code execute}: request parsing, tagging on a pooled
+ * engine and LIF output for the whole sample text.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecuteBenchmark {
+
+    private String request;
+
+    @Setup(Level.Trial)
+    public void setUp(TargetState target) {
+        request = target.request(Samples.text(target.getLanguage()));
+    }
+
+    @Benchmark
+    public String execute(TargetState target) {
+        return target.getService().execute(request);
+    }
+}
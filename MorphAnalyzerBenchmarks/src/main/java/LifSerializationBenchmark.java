@@ -0,0 +1,114 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.lappsgrid.morph_analyzer_common.LifStreamWriter;
+import org.lappsgrid.morph_analyzer_common.MorphLayer;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.Serializer;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * LIF serialization cost per token, without tagging: the token annotations a
+ * wrapper produced for the sample text are replayed into a
+ * {@link LifStreamWriter} that writes to a discarding writer, either directly
+ * or after being held in a {@link MorphLayer}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LifSerializationBenchmark {
+
+    private static final int TOKENS = 1000;
+
+    private Container container;
+    private Annotation[] tokens;
+
+    @Setup(Level.Trial)
+    public void setUp(TargetState target) {
+        String json = target.getService().execute(target.request(Samples.text(target.getLanguage())));
+        Container tagged = Serializer.parse(json, DataContainer.class).getPayload();
+        List<View> views = tagged.getViews();
+        tokens = views.get(views.size() - 1).getAnnotations().toArray(new Annotation[0]);
+        container = new Container();
+        container.setText(tagged.getText());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void serialize() throws IOException {
+        try (LifStreamWriter lif = new LifStreamWriter(NullWriter.INSTANCE, false)) {
+            lif.startContainer(container);
+            lif.startView(Uri.TOKEN, "benchmark", "benchmark");
+            replay(lif);
+            lif.endView();
+            lif.endContainer();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void serializeLayer() throws IOException {
+        MorphLayer layer = new MorphLayer(TOKENS);
+        replay(layer);
+        try (LifStreamWriter lif = new LifStreamWriter(NullWriter.INSTANCE, false)) {
+            lif.startContainer(container);
+            lif.startView(Uri.TOKEN, "benchmark", "benchmark");
+            layer.writeTo(lif);
+            lif.endView();
+            lif.endContainer();
+        }
+    }
+
+    private void replay(TokenSink sink) {
+        for (int i = 0; i < TOKENS; i++) {
+            Annotation token = tokens[i % tokens.length];
+            sink.startToken(i, -1, token.getStart().intValue(), token.getEnd().intValue());
+            for (Map.Entry<String, Object> feature : token.getFeatures().entrySet()) {
+                sink.addFeature(feature.getKey(), String.valueOf(feature.getValue()));
+            }
+            sink.endToken();
+        }
+    }
+
+    private static final class NullWriter extends Writer {
+
+        static final NullWriter INSTANCE = new NullWriter();
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.morph_analyzer_common.LatencyHistogram;
+import org.lappsgrid.morph_analyzer_common.LatencySnapshot;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.WorkerThreads;
+import org.lappsgrid.serialization.Data;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Closed-loop load test for one wrapper and model: a number of clients keep
+ * one {@code execute} request each in flight for a fixed time, then one batch
+ * of as many documents goes through {@code executeParallel}. Reports
+ * throughput, latency percentiles, rejections and the peak number of platform
+ * threads.
+ *
+ * Run it once with the defaults and once with virtual threads to compare, e.g.
+ * <pre>
+ * java -cp target/benchmarks.jar org.lappsgrid.morph_analyzer_benchmarks.LoadTest rftagger:de 2000 30
+ * java -Drftagger.virtualThreads=true -Drftagger.admission.maxConcurrentPerKey=64 \
+ *      -Drftagger.admission.maxQueuedPerKey=4000 -Drftagger.pool.maxPerKey=64 \
+ *      -cp target/benchmarks.jar org.lappsgrid.morph_analyzer_benchmarks.LoadTest rftagger:de 2000 30
+ * </pre>
+ * Clients run on virtual threads where the JVM has them, so that the client
+ * side does not add platform threads of its own.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadTest wrapper:language[/variant] [clients] [seconds]");
+            System.exit(1);
+        }
+        TargetState target = new TargetState();
+        target.target = args[0];
+        target.setUp();
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        MorphAnalyzerService service = target.getService();
+        List<String> sentences = Samples.sentences(target.getLanguage());
+        String request = target.request(sentences.get(0));
+        // Loads the model before the clock starts
+        service.warmUp(target.getKey());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder rejected = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ThreadFactory factory = WorkerThreads.factory("load-client", true);
+        List<Thread> running = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread client = factory.newThread(() -> {
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    String json = service.execute(request);
+                    if (json.contains(Uri.ERROR)) {
+                        rejected.increment();
+                    } else {
+                        latency.record(System.nanoTime() - start);
+                    }
+                }
+            });
+            running.add(client);
+            client.start();
+        }
+        for (Thread client : running) {
+            client.join();
+        }
+        LatencySnapshot snapshot = latency.snapshot();
+        System.out.printf("execute: %d clients, %d s, virtual threads available: %s%n", clients, seconds,
+                WorkerThreads.isVirtualSupported());
+        System.out.printf("  completed %d (%.1f/s), failed or rejected %d%n", snapshot.getCount(),
+                snapshot.getCount() / (double) seconds, rejected.sum());
+        System.out.printf("  latency ms p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n", millis(snapshot.getP50()),
+                millis(snapshot.getP90()), millis(snapshot.getP99()), millis(snapshot.getMax()));
+        System.out.printf("  peak platform threads %d%n", threads.getPeakThreadCount());
+
+        List<BatchDocument> documents = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            documents.add(new BatchDocument("d" + i, target.getKey().getLanguage(), target.getKey().getVariant(),
+                    sentences.get(i % sentences.size())));
+        }
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        Data[] results = service.executeParallel(documents);
+        long elapsed = System.nanoTime() - start;
+        int failed = 0;
+        for (Data result : results) {
+            if (Uri.ERROR.equals(result.getDiscriminator())) {
+                failed++;
+            }
+        }
+        System.out.printf("executeParallel: %d documents in %.1f ms, %d failed, peak platform threads %d%n",
+                documents.size(), millis(elapsed), failed, threads.getPeakThreadCount());
+        System.exit(0);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
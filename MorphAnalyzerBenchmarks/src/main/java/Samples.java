@@ -0,0 +1,44 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline sample texts bundled under {@code samples/<language>.txt}: one
+ * pre-tokenized sentence per line.
+ */
+public final class Samples {
+
+    private Samples() {
+    }
+
+    public static List<String> sentences(String language) {
+        String name = "/samples/" + language + ".txt";
+        InputStream in = Samples.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalArgumentException("No sample text for language " + language);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+
+    public static String text(String language) {
+        return String.join("\n", sentences(language));
+    }
+}
@@ -0,0 +1,79 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.sfst_annotator_lapps.SfstAnnotatorLapps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SFST batch throughput in documents per second through {@code executeParallel}
+ * at different worker counts; on a machine with enough cores it should grow
+ * close to linearly with {@code workers}. The worker count and the pool size
+ * are system properties read when the wrapper class is loaded, which works here
+ * because JMH runs every parameter combination in a JVM of its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SfstParallelBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"de/smor-ca"})
+    public String model;
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private SfstAnnotatorLapps service;
+    private List<BatchDocument> documents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        System.setProperty("sfst.parallel.workers", Integer.toString(workers));
+        System.setProperty("sfst.pool.maxPerKey", Integer.toString(workers));
+        int slash = model.indexOf('/');
+        String language = model.substring(0, slash);
+        String variant = model.substring(slash + 1);
+        service = new SfstAnnotatorLapps();
+
+        List<String> sentences = Samples.sentences(language);
+        documents = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            documents.add(new BatchDocument("d" + i, language, variant, sentences.get(i % sentences.size())));
+        }
+        // Starts one fst-infl process per worker before the clock starts
+        service.executeParallel(documents);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Data[] executeParallel() {
+        return service.executeParallel(documents);
+    }
+}
@@ -0,0 +1,92 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.lappsgrid.sfst_annotator_lapps.SfstTagChainParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lemma/POS extraction from SFST analyses: the split-based code the SFST
+ * wrapper used before, against {@link SfstTagChainParser}. Run with the GC
+ * profiler to compare allocation per analysis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SfstTagChainBenchmark {
+
+    private static final String[] CHAINS = {
+            "<CAP>die<+ART><Def><Fem><Dat><Sg>",
+            "Kran<NN>Ken<NN>Haus<+NN><Neut><Nom><Sg>",
+            "Arzt<+NN><Masc><Nom><Sg>",
+            "<CAP>fahren<+V><3><Sg><Past><Ind>",
+            "gelb<+ADJ><Pos><Pred>",
+            "casa<NOUN-F>-s",
+            "ev<Noun><pl><p3s>",
+            "."
+    };
+
+    private final SfstTagChainParser parser = new SfstTagChainParser();
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void legacy(Blackhole blackhole) {
+        for (String chain : CHAINS) {
+            if (!chain.contains("<")) {
+                blackhole.consume("");
+                blackhole.consume("");
+                continue;
+            }
+            String[] tags = chain.split("<");
+            String lemma = "";
+            String probable_tag = "";
+            String last_tagchain = "";
+            boolean has_end_tag_last = true;
+            for (int i = 0; i < tags.length; i++) {
+                while (tags[i].equals("")) i++;
+                String tag = tags[i];
+                if ((tag.indexOf(">") != tag.length() - 1) || (tag.contains("^"))) {
+                    if (tag.contains(">"))
+                        lemma += last_tagchain + "<" + tag;
+                    else lemma += last_tagchain + tag;
+                    last_tagchain = "";
+                    has_end_tag_last = false;
+                } else {
+                    if (!has_end_tag_last) {
+                        lemma += last_tagchain;
+                        probable_tag = tag;
+                        last_tagchain = "<" + tag;
+                    } else {
+                        last_tagchain += "<" + tag;
+                    }
+                    has_end_tag_last = true;
+                }
+            }
+            blackhole.consume(lemma);
+            blackhole.consume("<" + probable_tag);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void parser(Blackhole blackhole) {
+        for (String chain : CHAINS) {
+            parser.parse(chain);
+            blackhole.consume(parser.getLemma());
+            blackhole.consume(parser.getPos());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.lappsgrid.mate_tools_lapps.MateMorphTaggerLapps;
+import org.lappsgrid.morph_analyzer_common.EngineFactory;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.rftagger_lapps.RfTaggerLapps;
+import org.lappsgrid.sfst_annotator_lapps.SfstAnnotatorLapps;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The wrapper and model a benchmark runs against, written as
+ * {@code wrapper:language[/variant]}. Every supported language of every
+ * wrapper is listed; pass {@code -p target=...} to run a subset.
+ */
+@State(Scope.Benchmark)
+public class TargetState {
+
+    @Param({
+            "rftagger:cz", "rftagger:de", "rftagger:hu", "rftagger:ru", "rftagger:sk", "rftagger:sl",
+            "matetools:de", "matetools:es", "matetools:fr",
+            "sfst:de/morphisto-ca", "sfst:de/smor-ca", "sfst:de/zmorge-orig-ca", "sfst:de/zmorge-newlemma-ca",
+            "sfst:it/pippi-ca", "sfst:tr/trmorph-ca"})
+    public String target;
+
+    private MorphAnalyzerService service;
+    private EngineFactory factory;
+    private EngineKey key;
+    private boolean hasVariant;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int colon = target.indexOf(':');
+        String wrapper = target.substring(0, colon);
+        String model = target.substring(colon + 1);
+        int slash = model.indexOf('/');
+        key = slash < 0 ? new EngineKey(model, null)
+                : new EngineKey(model.substring(0, slash), model.substring(slash + 1));
+        switch (wrapper) {
+            case "rftagger":
+                service = new RfTaggerLapps();
+                factory = RfTaggerLapps::createRfTagger;
+                hasVariant = true;
+                break;
+            case "matetools":
+                service = new MateMorphTaggerLapps();
+                factory = MateMorphTaggerLapps::createAggregate;
+                hasVariant = false;
+                break;
+            case "sfst":
+                service = new SfstAnnotatorLapps();
+                factory = SfstAnnotatorLapps::createSfstEngine;
+                hasVariant = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown wrapper " + wrapper);
+        }
+    }
+
+    public MorphAnalyzerService getService() {
+        return service;
+    }
+
+    public EngineFactory getFactory() {
+        return factory;
+    }
+
+    public EngineKey getKey() {
+        return key;
+    }
+
+    public String getLanguage() {
+        return key.getLanguage();
+    }
+
+    /** Builds a plain-text request in the format the wrapper expects. */
+    public String request(String text) {
+        if (hasVariant) {
+            return key.getLanguage() + "; " + key.getVariant() + "; " + text;
+        }
+        return key.getLanguage() + "; " + text;
+    }
+}
@@ -0,0 +1,60 @@
+package org.lappsgrid.morph_analyzer_benchmarks;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.lappsgrid.morph_analyzer_common.SharedTypeSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+/**
+ * Cold start of the type system: building {@code engines} engines and a JCas
+ * for each in a fresh JVM, with uimaFIT detecting the type descriptors for
+ * every engine as the wrappers used to, and with {@link SharedTypeSystem}.
+ * A no-op annotator keeps model loading out of the measurement; 15 engines
+ * is one per supported model.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Thread)
+public class TypeSystemStartupBenchmark {
+
+    @Param({"1", "15"})
+    public int engines;
+
+    @Benchmark
+    public void detectedPerEngine(Blackhole blackhole) throws UIMAException {
+        for (int i = 0; i < engines; i++) {
+            use(createEngine(NoOpAnnotator.class), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void shared(Blackhole blackhole) throws UIMAException {
+        SharedTypeSystem.initialize();
+        for (int i = 0; i < engines; i++) {
+            use(createEngine(NoOpAnnotator.class, SharedTypeSystem.get()), blackhole);
+        }
+    }
+
+    private static void use(AnalysisEngine engine, Blackhole blackhole) throws UIMAException {
+        blackhole.consume(engine.newJCas());
+        engine.destroy();
+    }
+}
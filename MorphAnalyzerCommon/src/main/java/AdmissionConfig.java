@@ -0,0 +1,76 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Limits for an {@link AdmissionController}.
+ *
+ * Every setting but {@code virtualThreads}, which the services switch for all
+ * their executors at once, can be overridden with a system property named
+ * {@code <prefix>.<setting>}, e.g. {@code -Drftagger.admission.maxQueuedPerKey=64}.
+ */
+public class AdmissionConfig {
+
+    private int maxConcurrentPerKey = Runtime.getRuntime().availableProcessors();
+    private int maxQueuedPerKey = 32;
+    private long timeoutMillis = 60 * 1000L;
+    private int maxKeys = 32;
+    private boolean virtualThreads = false;
+
+    public static AdmissionConfig fromSystemProperties(String prefix) {
+        AdmissionConfig config = new AdmissionConfig();
+        config.maxConcurrentPerKey = Integer.getInteger(prefix + ".maxConcurrentPerKey", config.maxConcurrentPerKey);
+        config.maxQueuedPerKey = Integer.getInteger(prefix + ".maxQueuedPerKey", config.maxQueuedPerKey);
+        config.timeoutMillis = Long.getLong(prefix + ".timeoutMillis", config.timeoutMillis);
+        config.maxKeys = Integer.getInteger(prefix + ".maxKeys", config.maxKeys);
+        return config;
+    }
+
+    /** Requests tagged at the same time per language/variant. */
+    public int getMaxConcurrentPerKey() {
+        return maxConcurrentPerKey;
+    }
+
+    public AdmissionConfig setMaxConcurrentPerKey(int maxConcurrentPerKey) {
+        this.maxConcurrentPerKey = maxConcurrentPerKey;
+        return this;
+    }
+
+    /** Requests waiting per language/variant; further requests are rejected at once. */
+    public int getMaxQueuedPerKey() {
+        return maxQueuedPerKey;
+    }
+
+    public AdmissionConfig setMaxQueuedPerKey(int maxQueuedPerKey) {
+        this.maxQueuedPerKey = maxQueuedPerKey;
+        return this;
+    }
+
+    /** Time a caller waits for its result, queueing included, before the request is cancelled. */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public AdmissionConfig setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /** Keys with their own queue; any further keys share a single one. */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public AdmissionConfig setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+        return this;
+    }
+
+    /** Run each request on its own virtual thread (Java 21+; platform threads otherwise). */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public AdmissionConfig setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+}
@@ -0,0 +1,292 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs requests on a bounded executor per language/variant, so that a slow or
+ * overloaded model cannot tie up every container thread. Each key gets at most
+ * {@code maxConcurrentPerKey} workers and a queue of {@code maxQueuedPerKey};
+ * when both are full a request is rejected immediately instead of waiting
+ * (with a queue size of 0, as soon as all workers are busy).
+ * A caller that times out cancels its request, which removes it from the queue
+ * if it has not started yet.
+ *
+ * With {@link AdmissionConfig#isVirtualThreads} every admitted request runs on
+ * its own virtual thread and waits for one of the key's slots there, so
+ * requests blocked on an external tagger process hold no platform thread and
+ * the limits can be raised into the thousands.
+ */
+public class AdmissionController implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+
+    private static final EngineKey OVERFLOW = new EngineKey("other", null);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final String name;
+    private final AdmissionConfig config;
+    private final boolean virtual;
+    private final ConcurrentMap<EngineKey, Lane> lanes = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public AdmissionController(String name, AdmissionConfig config) {
+        this.name = name;
+        this.config = config;
+        virtual = config.isVirtualThreads() && WorkerThreads.isVirtualSupported();
+        if (config.isVirtualThreads() && !virtual) {
+            log.warn("Virtual threads requested for {} but not available before Java 21; using platform threads",
+                    name);
+        }
+    }
+
+    public AdmissionConfig getConfig() {
+        return config;
+    }
+
+    /** Whether requests run on virtual threads. */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Queues the task for the key.
+     *
+     * @throws RejectedExecutionException if the key's workers and queue are full
+     */
+    public <T> Future<T> submit(EngineKey key, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        lane(key).execute(future);
+        return future;
+    }
+
+    /**
+     * Queues the task and waits for its result. On timeout or interruption the
+     * task is cancelled: dropped if still queued, interrupted if running.
+     *
+     * @throws RejectedExecutionException if the key's workers and queue are full
+     */
+    public <T> T call(EngineKey key, Callable<T> task)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Lane lane = lane(key);
+        FutureTask<T> future = new FutureTask<>(task);
+        lane.execute(future);
+        try {
+            return future.get(config.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            future.cancel(true);
+            // Frees the queue slot now rather than when a worker reaches the cancelled task
+            lane.remove(future);
+            throw e;
+        }
+    }
+
+    /** Requests waiting for a worker for the key. */
+    public int getQueued(EngineKey key) {
+        Lane lane = lanes.get(key);
+        return lane == null ? 0 : lane.queued();
+    }
+
+    /** Requests being processed for the key. */
+    public int getActive(EngineKey key) {
+        Lane lane = lanes.get(key);
+        return lane == null ? 0 : lane.active();
+    }
+
+    private Lane lane(EngineKey key) {
+        if (closed) {
+            throw new RejectedExecutionException(name + " is shut down");
+        }
+        Lane lane = lanes.get(key);
+        if (lane != null) {
+            return lane;
+        }
+        if (lanes.size() >= config.getMaxKeys()) {
+            key = OVERFLOW;
+        }
+        return lanes.computeIfAbsent(key, this::newLane);
+    }
+
+    private Lane newLane(EngineKey key) {
+        String prefix = name + "-" + key.getLanguage() + (key.getVariant() == null ? "" : "-" + key.getVariant());
+        if (virtual) {
+            return new VirtualLane(WorkerThreads.factory(prefix, true), config.getMaxConcurrentPerKey(),
+                    config.getMaxQueuedPerKey());
+        }
+        return new PlatformLane(prefix, config.getMaxConcurrentPerKey(), config.getMaxQueuedPerKey());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Lane lane : lanes.values()) {
+            lane.close();
+        }
+        lanes.clear();
+    }
+
+    private interface Lane {
+
+        /** @throws RejectedExecutionException if the lane is full */
+        void execute(FutureTask<?> task);
+
+        void remove(FutureTask<?> task);
+
+        int queued();
+
+        int active();
+
+        void close();
+    }
+
+    /** A fixed pool of platform threads with a bounded queue. */
+    private static final class PlatformLane implements Lane {
+
+        private final ThreadPoolExecutor executor;
+
+        PlatformLane(String prefix, int maxConcurrent, int maxQueued) {
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    queue(maxQueued), WorkerThreads.factory(prefix, false));
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        private static BlockingQueue<Runnable> queue(int capacity) {
+            return capacity > 0 ? new ArrayBlockingQueue<>(capacity) : new SynchronousQueue<>();
+        }
+
+        @Override
+        public void execute(FutureTask<?> task) {
+            executor.execute(task);
+        }
+
+        @Override
+        public void remove(FutureTask<?> task) {
+            executor.remove(task);
+        }
+
+        @Override
+        public int queued() {
+            return executor.getQueue().size();
+        }
+
+        @Override
+        public int active() {
+            return executor.getActiveCount();
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A new virtual thread per admitted task. Admission (running plus waiting) and
+     * running are bounded by separate semaphores; waiting tasks are parked threads.
+     */
+    private static final class VirtualLane implements Lane {
+
+        private final ThreadFactory threads;
+        private final int maxAdmitted;
+        private final Semaphore admitted;
+        private final Semaphore running;
+        private final AtomicInteger active = new AtomicInteger();
+        // Thread of each admitted task, to interrupt it when the task is dropped
+        private final Map<FutureTask<?>, Thread> live = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+
+        VirtualLane(ThreadFactory threads, int maxConcurrent, int maxQueued) {
+            this.threads = threads;
+            maxAdmitted = maxConcurrent + Math.max(0, maxQueued);
+            admitted = new Semaphore(maxAdmitted);
+            running = new Semaphore(maxConcurrent);
+        }
+
+        @Override
+        public void execute(FutureTask<?> task) {
+            if (closed || !admitted.tryAcquire()) {
+                throw new RejectedExecutionException("Lane is full");
+            }
+            Thread thread = threads.newThread(() -> run(task));
+            live.put(task, thread);
+            thread.start();
+        }
+
+        private void run(FutureTask<?> task) {
+            try {
+                running.acquire();
+            } catch (InterruptedException e) {
+                // Dropped while waiting
+                task.cancel(false);
+                release(task);
+                return;
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                running.release();
+                release(task);
+            }
+        }
+
+        // Whoever takes the task out of live first gives back its admission
+        private void release(FutureTask<?> task) {
+            if (live.remove(task) != null) {
+                admitted.release();
+            }
+        }
+
+        @Override
+        public void remove(FutureTask<?> task) {
+            if (!task.isCancelled()) {
+                return;
+            }
+            Thread thread = live.remove(task);
+            if (thread != null) {
+                admitted.release();
+                // Wakes a waiting task; a running one was already interrupted by cancel(true)
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public int queued() {
+            return Math.max(0, maxAdmitted - admitted.availablePermits() - active.get());
+        }
+
+        @Override
+        public int active() {
+            return active.get();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (Map.Entry<FutureTask<?>, Thread> entry : live.entrySet()) {
+                entry.getKey().cancel(true);
+                entry.getValue().interrupt();
+            }
+        }
+    }
+}
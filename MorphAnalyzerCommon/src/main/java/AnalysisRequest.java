@@ -0,0 +1,40 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.lappsgrid.serialization.lif.Container;
+
+/**
+ * A parsed request: which model to use and the document to tag. The container
+ * holds the text plus any views supplied by an upstream LIF service.
+ */
+public class AnalysisRequest {
+
+    private final String language;
+    private final String variant;
+    private final Container container;
+
+    public AnalysisRequest(String language, String variant, Container container) {
+        this.language = language;
+        this.variant = variant;
+        this.container = container;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getVariant() {
+        return variant;
+    }
+
+    public Container getContainer() {
+        return container;
+    }
+
+    public String getText() {
+        return container.getText();
+    }
+
+    public EngineKey getEngineKey() {
+        return new EngineKey(language, variant);
+    }
+}
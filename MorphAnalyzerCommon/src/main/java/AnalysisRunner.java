@@ -0,0 +1,96 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs documents through pooled engines using recycled CAS instances.
+ *
+ * Every run takes an idle CAS, or creates one from its engine when none is
+ * idle, so the type system and the CAS heap are allocated once per concurrent
+ * run instead of per request. The CAS is reset and kept for the next run as
+ * soon as the handler has read the results; at most {@code casPoolSize} idle
+ * CASes are kept. Concurrency is therefore bounded by the engine pool and
+ * admission limits only, never by the number of CASes.
+ */
+public class AnalysisRunner {
+
+    private final BlockingQueue<CAS> idle;
+
+    /**
+     * @param casPoolSize idle CASes kept for reuse; more are created while more
+     * documents run at once
+     */
+    public AnalysisRunner(int casPoolSize) {
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, casPoolSize));
+    }
+
+    public static AnalysisRunner fromSystemProperties(String prefix) {
+        return new AnalysisRunner(
+                Integer.getInteger(prefix + ".casPoolSize", Runtime.getRuntime().availableProcessors()));
+    }
+
+    public <T> T run(EnginePool engines, EngineKey key, String text, JCasHandler<T> handler)
+            throws UIMAException {
+        return run(engines, key, text, WhitespaceSegmenter.INSTANCE, handler);
+    }
+
+    public <T> T run(EnginePool engines, EngineKey key, String text, Segmenter segmenter, JCasHandler<T> handler)
+            throws UIMAException {
+        EngineLease lease = engines.lease(key);
+        try {
+            T result = run(lease.getEngine(), key.getLanguage(), text, segmenter, handler);
+            lease.close();
+            return result;
+        } finally {
+            lease.invalidate();
+        }
+    }
+
+    public <T> T run(AnalysisEngine engine, String language, String text, JCasHandler<T> handler)
+            throws UIMAException {
+        return run(engine, language, text, WhitespaceSegmenter.INSTANCE, handler);
+    }
+
+    public <T> T run(AnalysisEngine engine, String language, String text, Segmenter segmenter,
+            JCasHandler<T> handler) throws UIMAException {
+        return run(engine, language, text, segmenter, handler, true);
+    }
+
+    /**
+     * Segments the text into a recycled CAS of the engine and hands it to the
+     * handler without running the engine, e.g. to look at the tokens first.
+     */
+    public <T> T segment(AnalysisEngine engine, String language, String text, Segmenter segmenter,
+            JCasHandler<T> handler) throws UIMAException {
+        return run(engine, language, text, segmenter, handler, false);
+    }
+
+    private <T> T run(AnalysisEngine engine, String language, String text, Segmenter segmenter,
+            JCasHandler<T> handler, boolean process) throws UIMAException {
+        CAS cas = takeCas(engine);
+        try {
+            JCas jCas = cas.getJCas();
+            jCas.setDocumentLanguage(language);
+            segmenter.segment(jCas, text);
+            if (process) {
+                engine.process(jCas);
+            }
+            return handler.handle(jCas);
+        } finally {
+            cas.reset();
+            idle.offer(cas);
+        }
+    }
+
+    private CAS takeCas(AnalysisEngine engine) throws ResourceInitializationException {
+        CAS cas = idle.poll();
+        return cas != null ? cas : engine.newCAS();
+    }
+}
@@ -0,0 +1,59 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * One document of a batch request. The id is echoed back with the result so
+ * callers can correlate documents with results.
+ */
+public class BatchDocument {
+
+    private String id;
+    private String language;
+    private String variant;
+    private String text;
+
+    public BatchDocument() {
+    }
+
+    public BatchDocument(String id, String language, String variant, String text) {
+        this.id = id;
+        this.language = language;
+        this.variant = variant;
+        this.text = text;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getVariant() {
+        return variant;
+    }
+
+    public void setVariant(String variant) {
+        this.variant = variant;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public EngineKey getEngineKey() {
+        return new EngineKey(language, variant == null || variant.equals("null") ? null : variant);
+    }
+}
@@ -0,0 +1,17 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Batch tagging without LIF. Exposed next to {@code execute} through the
+ * JSON-RPC ({@code /jsServices}) and protobuf RPC ({@code /pbServices})
+ * servlets, so high-volume callers get packed offsets and dictionary-coded
+ * features instead of one JSON string per document.
+ */
+public interface BatchMorphService {
+
+    /**
+     * Tags the documents, grouped by language and variant, and returns one
+     * result per document in input order. Failed documents carry an error
+     * message and no tokens.
+     */
+    MorphBatchResponse tagBatch(BatchDocument[] documents);
+}
@@ -0,0 +1,12 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.lappsgrid.serialization.Data;
+
+/**
+ * Receives batch results as they are produced. A failed document is reported
+ * with a {@code Uri.ERROR} payload; the rest of the batch keeps going.
+ */
+public interface BatchSink {
+
+    void write(BatchDocument document, Data<?> result);
+}
@@ -0,0 +1,12 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.resource.ResourceInitializationException;
+
+/**
+ * Creates a fully initialized analysis engine for one language/variant.
+ */
+public interface EngineFactory {
+
+    AnalysisEngine create(EngineKey key) throws ResourceInitializationException;
+}
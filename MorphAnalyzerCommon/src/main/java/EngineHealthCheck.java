@@ -0,0 +1,16 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+
+/**
+ * Probes an idle pooled engine, e.g. by running a one-token document through
+ * it, so an engine whose external tagger process died is replaced before a
+ * request gets it.
+ */
+public interface EngineHealthCheck {
+
+    EngineHealthCheck NONE = (key, engine) -> true;
+
+    /** Returns false, or throws, if the engine should be destroyed. */
+    boolean isHealthy(EngineKey key, AnalysisEngine engine) throws Exception;
+}
@@ -0,0 +1,52 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.Objects;
+
+/**
+ * Identifies one loaded model: the document language plus the optional
+ * model variant (e.g. "smor-ca"). A {@code null} variant selects the
+ * default model for the language.
+ */
+public final class EngineKey {
+
+    private final String language;
+    private final String variant;
+
+    public EngineKey(String language, String variant) {
+        if (language == null) {
+            throw new IllegalArgumentException("language must not be null");
+        }
+        this.language = language;
+        this.variant = variant;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getVariant() {
+        return variant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EngineKey)) {
+            return false;
+        }
+        EngineKey other = (EngineKey) o;
+        return language.equals(other.language) && Objects.equals(variant, other.variant);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * language.hashCode() + Objects.hashCode(variant);
+    }
+
+    @Override
+    public String toString() {
+        return variant == null ? language : language + "/" + variant;
+    }
+}
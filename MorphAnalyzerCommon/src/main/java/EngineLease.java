@@ -0,0 +1,44 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+
+/**
+ * A borrowed engine that goes back to its pool when closed. Call
+ * {@link #invalidate()} if processing failed so the engine is destroyed instead.
+ */
+public class EngineLease implements AutoCloseable {
+
+    private final EnginePool pool;
+    private final EngineKey key;
+    private final AnalysisEngine engine;
+    private boolean done = false;
+
+    EngineLease(EnginePool pool, EngineKey key, AnalysisEngine engine) {
+        this.pool = pool;
+        this.key = key;
+        this.engine = engine;
+    }
+
+    public AnalysisEngine getEngine() {
+        return engine;
+    }
+
+    public EngineKey getKey() {
+        return key;
+    }
+
+    public void invalidate() {
+        if (!done) {
+            done = true;
+            pool.invalidate(key, engine);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!done) {
+            done = true;
+            pool.release(key, engine);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of initialized analysis engines keyed by language and variant.
+ *
+ * An engine is handed to exactly one caller at a time, so annotators that keep
+ * per-document state never see concurrent calls. Engines that stay idle longer
+ * than the configured timeout are destroyed down to the per-key minimum, and
+ * when more distinct models are resident than allowed the least recently used
+ * idle model is unloaded before a new one is created.
+ *
+ * Engines that wrap a long-lived external process can be recycled after a
+ * fixed number of leases and have their idle instances probed by an
+ * {@link EngineHealthCheck}; an engine that fails either way is destroyed and
+ * the next borrower gets a freshly started one.
+ *
+ * Every load and unload is reported to a {@link ModelManager}, which may
+ * unload idle models of this or any other pool to keep all of them within
+ * its memory budget.
+ */
+public class EnginePool {
+
+    private final EngineFactory factory;
+    private final EnginePoolConfig config;
+    private final EngineHealthCheck healthCheck;
+    private final ModelManager models;
+    private final ConcurrentMap<EngineKey, KeyedEngines> engines = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    public EnginePool(EngineFactory factory, EnginePoolConfig config) {
+        this(factory, config, EngineHealthCheck.NONE);
+    }
+
+    public EnginePool(EngineFactory factory, EnginePoolConfig config, EngineHealthCheck healthCheck) {
+        this(factory, config, healthCheck, ModelManager.getDefault());
+    }
+
+    public EnginePool(EngineFactory factory, EnginePoolConfig config, EngineHealthCheck healthCheck,
+            ModelManager models) {
+        this.factory = factory;
+        this.config = config;
+        this.healthCheck = healthCheck;
+        this.models = models;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "engine-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.getEvictionIntervalMillis();
+        evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+        long validation = config.getValidationIntervalMillis();
+        if (validation > 0 && healthCheck != EngineHealthCheck.NONE) {
+            evictor.scheduleWithFixedDelay(this::validateIdle, validation, validation, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public EngineLease lease(EngineKey key) throws ResourceInitializationException {
+        return new EngineLease(this, key, borrow(key));
+    }
+
+    public AnalysisEngine borrow(EngineKey key) throws ResourceInitializationException {
+        if (closed) {
+            throw new IllegalStateException("Engine pool has been closed");
+        }
+        KeyedEngines entry = entry(key);
+        entry.model.lastAccess = System.nanoTime();
+        try {
+            if (!entry.permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ResourceInitializationException(new TimeoutException(
+                        "No engine for " + key + " became available within "
+                                + config.getBorrowTimeoutMillis() + " ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceInitializationException(e);
+        }
+        IdleEngine idle = entry.idle.pollFirst();
+        if (idle != null) {
+            return idle.engine;
+        }
+        try {
+            return create(entry);
+        } catch (ResourceInitializationException | RuntimeException e) {
+            entry.permits.release();
+            throw e;
+        }
+    }
+
+    public void release(EngineKey key, AnalysisEngine engine) {
+        KeyedEngines entry = entry(key);
+        if (closed || usedUp(entry, engine)) {
+            destroy(entry, engine);
+        } else {
+            entry.idle.offerFirst(new IdleEngine(engine, System.nanoTime()));
+        }
+        entry.permits.release();
+    }
+
+    /**
+     * Drops an engine that failed while processing instead of returning it to the
+     * pool, so a broken annotator state is never handed out again.
+     */
+    public void invalidate(EngineKey key, AnalysisEngine engine) {
+        KeyedEngines entry = entry(key);
+        destroy(entry, engine);
+        entry.permits.release();
+    }
+
+    /**
+     * Loads engines for the given key until the per-key minimum (at least one)
+     * is resident, so the first request does not pay the model load.
+     */
+    public void prewarm(EngineKey key) throws ResourceInitializationException {
+        KeyedEngines entry = entry(key);
+        int target = Math.max(1, config.getMinIdlePerKey());
+        while (entry.created.get() < target && entry.permits.tryAcquire()) {
+            AnalysisEngine engine;
+            try {
+                engine = create(entry);
+            } catch (ResourceInitializationException | RuntimeException e) {
+                entry.permits.release();
+                throw e;
+            }
+            entry.idle.offerFirst(new IdleEngine(engine, System.nanoTime()));
+            entry.permits.release();
+        }
+    }
+
+    public Set<EngineKey> getResidentModels() {
+        Set<EngineKey> resident = new HashSet<>();
+        for (KeyedEngines entry : engines.values()) {
+            if (entry.created.get() > 0) {
+                resident.add(entry.key);
+            }
+        }
+        return resident;
+    }
+
+    /**
+     * Runs the health check on every idle engine, destroying those that fail.
+     * Borrowed engines are not touched; they are checked once they come back.
+     */
+    public void validateIdle() {
+        for (KeyedEngines entry : engines.values()) {
+            // Each probe holds a permit so the engine counts as borrowed meanwhile
+            for (int n = entry.idle.size(); n > 0 && !closed && entry.permits.tryAcquire(); n--) {
+                IdleEngine idle = entry.idle.pollLast();
+                if (idle == null) {
+                    entry.permits.release();
+                    break;
+                }
+                if (isHealthy(entry.key, idle.engine)) {
+                    entry.idle.offerLast(idle);
+                    entry.permits.release();
+                } else {
+                    invalidate(entry.key, idle.engine);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unloads the model of the key if none of its engines is borrowed; called
+     * by the {@link ModelManager} to stay within its budget.
+     */
+    boolean evict(EngineKey key) {
+        KeyedEngines entry = engines.get(key);
+        if (entry == null || entry.created.get() == 0 || !entry.isIdle()) {
+            return false;
+        }
+        unload(entry);
+        return true;
+    }
+
+    public int getLoadedEngineCount(EngineKey key) {
+        KeyedEngines entry = engines.get(key);
+        return entry == null ? 0 : entry.created.get();
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (KeyedEngines entry : engines.values()) {
+            unload(entry);
+            models.unregister(entry.model);
+        }
+    }
+
+    private KeyedEngines entry(EngineKey key) {
+        KeyedEngines entry = engines.get(key);
+        return entry != null ? entry : engines.computeIfAbsent(key,
+                k -> new KeyedEngines(k, config.getMaxPerKey(), models.register(this, k, config.getName())));
+    }
+
+    private AnalysisEngine create(KeyedEngines entry) throws ResourceInitializationException {
+        if (entry.created.get() == 0) {
+            makeRoomFor(entry);
+        }
+        long offHeap = config.getOffHeapBytesPerEngine();
+        long heapBefore = models.beforeLoad(entry.model, offHeap);
+        long start = System.nanoTime();
+        AnalysisEngine engine = factory.create(entry.key);
+        long heap = models.loaded(entry.model, heapBefore, System.nanoTime() - start, offHeap);
+        entry.created.incrementAndGet();
+        entry.loaded.put(engine, new LoadedEngine(heap));
+        return engine;
+    }
+
+    // Counts a finished lease; true once the engine has reached its use limit
+    private boolean usedUp(KeyedEngines entry, AnalysisEngine engine) {
+        int max = config.getMaxUsesPerEngine();
+        LoadedEngine loaded = entry.loaded.get(engine);
+        return max > 0 && loaded != null && loaded.uses.incrementAndGet() >= max;
+    }
+
+    private boolean isHealthy(EngineKey key, AnalysisEngine engine) {
+        try {
+            return healthCheck.isHealthy(key, engine);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // The cap is best effort: when every other model is busy we load anyway
+    // rather than block a request behind an unrelated language.
+    private void makeRoomFor(KeyedEngines target) {
+        int max = config.getMaxResidentModels();
+        if (max <= 0) {
+            return;
+        }
+        while (getResidentModels().size() >= max) {
+            KeyedEngines lru = null;
+            for (KeyedEngines entry : engines.values()) {
+                if (entry != target && entry.created.get() > 0 && entry.isIdle()
+                        && (lru == null || entry.model.lastAccess < lru.model.lastAccess)) {
+                    lru = entry;
+                }
+            }
+            if (lru == null) {
+                return;
+            }
+            unload(lru);
+            lru.model.stats.evictions.increment();
+        }
+    }
+
+    private void unload(KeyedEngines entry) {
+        IdleEngine idle;
+        while ((idle = entry.idle.pollLast()) != null) {
+            destroy(entry, idle.engine);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        for (KeyedEngines entry : engines.values()) {
+            while (entry.created.get() > config.getMinIdlePerKey()) {
+                IdleEngine oldest = entry.idle.peekLast();
+                if (oldest == null || oldest.since - cutoff > 0) {
+                    break;
+                }
+                if (entry.idle.removeLastOccurrence(oldest)) {
+                    destroy(entry, oldest.engine);
+                }
+            }
+        }
+    }
+
+    private void destroy(KeyedEngines entry, AnalysisEngine engine) {
+        LoadedEngine loaded = entry.loaded.remove(engine);
+        entry.created.decrementAndGet();
+        if (loaded != null) {
+            models.unloaded(entry.model, loaded.heapBytes, config.getOffHeapBytesPerEngine());
+        }
+        engine.destroy();
+    }
+
+    private static final class KeyedEngines {
+        final EngineKey key;
+        final Semaphore permits;
+        final LinkedBlockingDeque<IdleEngine> idle = new LinkedBlockingDeque<>();
+        final AtomicInteger created = new AtomicInteger();
+        final ConcurrentMap<AnalysisEngine, LoadedEngine> loaded = new ConcurrentHashMap<>();
+        final ModelManager.Model model;
+
+        KeyedEngines(EngineKey key, int maxEngines, ModelManager.Model model) {
+            this.key = key;
+            this.permits = new Semaphore(maxEngines, true);
+            this.model = model;
+        }
+
+        boolean isIdle() {
+            return idle.size() == created.get();
+        }
+    }
+
+    private static final class LoadedEngine {
+        final AtomicInteger uses = new AtomicInteger();
+        final long heapBytes;
+
+        LoadedEngine(long heapBytes) {
+            this.heapBytes = heapBytes;
+        }
+    }
+
+    private static final class IdleEngine {
+        final AnalysisEngine engine;
+        final long since;
+
+        IdleEngine(AnalysisEngine engine, long since) {
+            this.engine = engine;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Sizing and eviction settings for an {@link EnginePool}.
+ *
+ * Every setting can be overridden with a system property named
+ * {@code <prefix>.<setting>}, e.g. {@code -Drftagger.pool.maxPerKey=8}.
+ * The pool reports its models to the {@link ModelManager} under the prefix
+ * without a trailing {@code .pool}.
+ */
+public class EnginePoolConfig {
+
+    private String name = "engines";
+    private int minIdlePerKey = 0;
+    private int maxPerKey = Runtime.getRuntime().availableProcessors();
+    private int maxResidentModels = 0;
+    private long idleTimeoutMillis = 10 * 60 * 1000L;
+    private long borrowTimeoutMillis = 60 * 1000L;
+    private long evictionIntervalMillis = 30 * 1000L;
+    private int maxUsesPerEngine = 0;
+    private long validationIntervalMillis = 60 * 1000L;
+    private long offHeapBytesPerEngine = 0;
+
+    public static EnginePoolConfig fromSystemProperties(String prefix) {
+        EnginePoolConfig config = new EnginePoolConfig();
+        config.name = prefix.endsWith(".pool") ? prefix.substring(0, prefix.length() - ".pool".length()) : prefix;
+        config.minIdlePerKey = Integer.getInteger(prefix + ".minIdlePerKey", config.minIdlePerKey);
+        config.maxPerKey = Integer.getInteger(prefix + ".maxPerKey", config.maxPerKey);
+        config.maxResidentModels = Integer.getInteger(prefix + ".maxResidentModels", config.maxResidentModels);
+        config.idleTimeoutMillis = Long.getLong(prefix + ".idleTimeoutMillis", config.idleTimeoutMillis);
+        config.borrowTimeoutMillis = Long.getLong(prefix + ".borrowTimeoutMillis", config.borrowTimeoutMillis);
+        config.evictionIntervalMillis = Long.getLong(prefix + ".evictionIntervalMillis", config.evictionIntervalMillis);
+        config.maxUsesPerEngine = Integer.getInteger(prefix + ".maxUsesPerEngine", config.maxUsesPerEngine);
+        config.validationIntervalMillis = Long.getLong(prefix + ".validationIntervalMillis",
+                config.validationIntervalMillis);
+        config.offHeapBytesPerEngine = Long.getLong(prefix + ".offHeapBytesPerEngine", config.offHeapBytesPerEngine);
+        return config;
+    }
+
+    /** Name the pool's models are reported under. */
+    public String getName() {
+        return name;
+    }
+
+    public EnginePoolConfig setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /** Engines kept loaded per key even when idle, once the key has been used. */
+    public int getMinIdlePerKey() {
+        return minIdlePerKey;
+    }
+
+    public EnginePoolConfig setMinIdlePerKey(int minIdlePerKey) {
+        this.minIdlePerKey = minIdlePerKey;
+        return this;
+    }
+
+    /** Upper bound on engines (borrowed plus idle) per key. */
+    public int getMaxPerKey() {
+        return maxPerKey;
+    }
+
+    public EnginePoolConfig setMaxPerKey(int maxPerKey) {
+        this.maxPerKey = maxPerKey;
+        return this;
+    }
+
+    /** Upper bound on distinct keys with loaded engines; 0 means unbounded. */
+    public int getMaxResidentModels() {
+        return maxResidentModels;
+    }
+
+    public EnginePoolConfig setMaxResidentModels(int maxResidentModels) {
+        this.maxResidentModels = maxResidentModels;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public EnginePoolConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public EnginePoolConfig setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        return this;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public EnginePoolConfig setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+        return this;
+    }
+
+    /** Leases after which an engine is destroyed instead of returned; 0 means unlimited. */
+    public int getMaxUsesPerEngine() {
+        return maxUsesPerEngine;
+    }
+
+    public EnginePoolConfig setMaxUsesPerEngine(int maxUsesPerEngine) {
+        this.maxUsesPerEngine = maxUsesPerEngine;
+        return this;
+    }
+
+    /** How often idle engines are probed by the pool's health check; 0 disables probing. */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public EnginePoolConfig setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Memory an engine holds outside the heap, such as an external tagger
+     * process with its model, counted against the {@link ModelManager}'s
+     * off-heap budget.
+     */
+    public long getOffHeapBytesPerEngine() {
+        return offHeapBytesPerEngine;
+    }
+
+    public EnginePoolConfig setOffHeapBytesPerEngine(long offHeapBytesPerEngine) {
+        this.offHeapBytesPerEngine = offHeapBytesPerEngine;
+        return this;
+    }
+}
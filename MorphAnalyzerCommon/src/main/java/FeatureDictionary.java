@@ -0,0 +1,47 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns consecutive int codes to strings in order of first appearance. Used
+ * for the feature names and values of {@link MorphLayer}s; layers built with
+ * the same dictionaries share their codes. Not thread-safe.
+ */
+public class FeatureDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /** Code of the string, adding it if it is new. */
+    public int code(String s) {
+        Integer code = codes.get(s);
+        if (code == null) {
+            code = strings.size();
+            codes.put(s, code);
+            strings.add(s);
+        }
+        return code;
+    }
+
+    /** Code of the string, or -1 if it is not in the dictionary. */
+    public int find(String s) {
+        Integer code = codes.get(s);
+        return code == null ? -1 : code;
+    }
+
+    public String get(int code) {
+        return strings.get(code);
+    }
+
+    public int size() {
+        return strings.size();
+    }
+
+    /** The strings in code order. */
+    public String[] toArray() {
+        return strings.toArray(new String[0]);
+    }
+}
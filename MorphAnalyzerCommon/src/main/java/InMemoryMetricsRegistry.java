@@ -0,0 +1,70 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Keeps a latency histogram per stage and document, token and error counters per tag set. */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    /** All metrics of one wrapper/language/variant. */
+    public static class TaggedMetrics {
+
+        private final LatencyHistogram[] stages = new LatencyHistogram[Stage.ALL.length];
+        private final LongAdder documents = new LongAdder();
+        private final LongAdder tokens = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        TaggedMetrics() {
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyHistogram();
+            }
+        }
+
+        public LatencyHistogram getLatency(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        public long getDocuments() {
+            return documents.sum();
+        }
+
+        public long getTokens() {
+            return tokens.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+    }
+
+    private final ConcurrentMap<MetricTags, TaggedMetrics> metrics = new ConcurrentHashMap<>();
+
+    private TaggedMetrics get(MetricTags tags) {
+        TaggedMetrics tagged = metrics.get(tags);
+        return tagged != null ? tagged : metrics.computeIfAbsent(tags, t -> new TaggedMetrics());
+    }
+
+    @Override
+    public void recordStage(MetricTags tags, Stage stage, long nanos) {
+        get(tags).stages[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void countDocument(MetricTags tags, long tokens) {
+        TaggedMetrics tagged = get(tags);
+        tagged.documents.increment();
+        tagged.tokens.add(tokens);
+    }
+
+    @Override
+    public void countError(MetricTags tags) {
+        get(tags).errors.increment();
+    }
+
+    public Map<MetricTags, TaggedMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+}
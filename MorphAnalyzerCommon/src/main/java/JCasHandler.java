@@ -0,0 +1,12 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.jcas.JCas;
+
+/**
+ * Reads the analysis results out of a processed JCas. The JCas is recycled as
+ * soon as the handler returns, so nothing from it may be retained.
+ */
+public interface JCasHandler<T> {
+
+    T handle(JCas jCas);
+}
@@ -0,0 +1,48 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class JmxMetrics implements MetricsMXBean {
+
+    private final InMemoryMetricsRegistry registry;
+
+    public JmxMetrics(InMemoryMetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Map<String, Long> getDocuments() {
+        Map<String, Long> values = new TreeMap<>();
+        registry.getMetrics().forEach((tags, metrics) -> values.put(tags.toString(), metrics.getDocuments()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getTokens() {
+        Map<String, Long> values = new TreeMap<>();
+        registry.getMetrics().forEach((tags, metrics) -> values.put(tags.toString(), metrics.getTokens()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> values = new TreeMap<>();
+        registry.getMetrics().forEach((tags, metrics) -> values.put(tags.toString(), metrics.getErrors()));
+        return values;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatencies() {
+        Map<String, LatencySnapshot> values = new TreeMap<>();
+        registry.getMetrics().forEach((tags, metrics) -> {
+            for (Stage stage : Stage.ALL) {
+                LatencyHistogram histogram = metrics.getLatency(stage);
+                if (histogram.getCount() > 0) {
+                    values.put(tags + "/" + stage.getMetricName(), histogram.snapshot());
+                }
+            }
+        });
+        return values;
+    }
+}
@@ -0,0 +1,196 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.uima.jcas.JCas;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Copies the tokens and sentences of an incoming LIF container into the JCas
+ * instead of re-tokenizing the text, so the analysis lines up with the
+ * upstream segmentation. The most recent view containing tokens (and
+ * sentences, if any) is used. Without sentence annotations every line of the
+ * text that holds tokens becomes a sentence.
+ */
+public class LifSegmenter implements Segmenter {
+
+    private static final Comparator<Annotation> BY_OFFSET =
+            Comparator.comparingLong((Annotation a) -> a.getStart()).thenComparingLong(a -> a.getEnd());
+
+    // Sorted begin/end pairs
+    private final int[] tokens;
+    private final int[] sentences;
+    // The part of the document being segmented; offsets are shifted by -from
+    private final int from;
+    private final int to;
+
+    public LifSegmenter(Container container) {
+        this(offsets(container, Uri.TOKEN), offsets(container, Uri.SENTENCE), 0, Integer.MAX_VALUE);
+    }
+
+    private LifSegmenter(int[] tokens, int[] sentences, int from, int to) {
+        this.tokens = tokens;
+        this.sentences = sentences;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static boolean hasTokens(Container container) {
+        return findView(container, Uri.TOKEN) != null;
+    }
+
+    /** Picks the LIF segmentation when the container has tokens, whitespace splitting otherwise. */
+    public static Segmenter forContainer(Container container) {
+        return hasTokens(container) ? new LifSegmenter(container) : WhitespaceSegmenter.INSTANCE;
+    }
+
+    @Override
+    public Segmenter window(int start, int end) {
+        return new LifSegmenter(tokens, sentences, from + start, from + end);
+    }
+
+    /**
+     * Moves the window end off any upstream sentence or token it would cut: back
+     * to the start of a crossing sentence, then back to the start of a crossing
+     * token, or past its end when the token starts the window.
+     */
+    @Override
+    public int windowEnd(String text, int start, int maxChars) {
+        int end = SentenceWindows.end(text, start, maxChars);
+        if (end >= text.length()) {
+            return end;
+        }
+        int sentence = crossing(sentences, from + end);
+        if (sentence >= 0 && sentences[sentence] - from > start) {
+            end = sentences[sentence] - from;
+        }
+        int token = crossing(tokens, from + end);
+        if (token >= 0) {
+            int begin = tokens[token] - from;
+            end = begin > start ? begin : Math.min(tokens[token + 1] - from, text.length());
+        }
+        return end;
+    }
+
+    // Index of a pair with begin < offset < end, or -1
+    private static int crossing(int[] offsets, int offset) {
+        int i = first(offsets, 1, offset + 1);
+        return i < offsets.length && offsets[i] < offset ? i : -1;
+    }
+
+    @Override
+    public void segment(JCas jCas, String text) {
+        jCas.setDocumentText(text);
+        for (int i = first(tokens, 0, from); i < tokens.length && tokens[i + 1] <= to; i += 2) {
+            new Token(jCas, tokens[i] - from, tokens[i + 1] - from).addToIndexes();
+        }
+        if (sentences.length > 0) {
+            // Sentences crossing the window border are clipped to it
+            for (int i = first(sentences, 1, from + 1); i < sentences.length && sentences[i] < to; i += 2) {
+                int begin = Math.max(sentences[i], from) - from;
+                int end = Math.min(sentences[i + 1], to) - from;
+                new Sentence(jCas, begin, end).addToIndexes();
+            }
+            return;
+        }
+        int sentenceStart = -1;
+        int sentenceEnd = -1;
+        int lineEnd = lineEnd(text, 0);
+        for (int i = first(tokens, 0, from); i < tokens.length && tokens[i + 1] <= to; i += 2) {
+            int start = tokens[i] - from;
+            if (start > lineEnd) {
+                if (sentenceStart >= 0) {
+                    new Sentence(jCas, sentenceStart, sentenceEnd).addToIndexes();
+                    sentenceStart = -1;
+                }
+                lineEnd = lineEnd(text, start);
+            }
+            if (sentenceStart < 0) {
+                sentenceStart = start;
+            }
+            sentenceEnd = tokens[i + 1] - from;
+        }
+        if (sentenceStart >= 0) {
+            new Sentence(jCas, sentenceStart, sentenceEnd).addToIndexes();
+        }
+    }
+
+    // Index of the first pair whose begin (field 0) or end (field 1) is at least bound
+    private static int first(int[] offsets, int field, int bound) {
+        int low = 0;
+        int high = offsets.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid * 2 + field] < bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low * 2;
+    }
+
+    private static int lineEnd(String text, int from) {
+        int newline = text.indexOf('\n', from);
+        return newline < 0 ? text.length() : newline;
+    }
+
+    /**
+     * The sorted offsets of the annotations of the type. Offsets are client input,
+     * so they are checked against the text here, before an engine is leased.
+     */
+    private static int[] offsets(Container container, String type) {
+        List<Annotation> annotations = new ArrayList<>();
+        View view = findView(container, type);
+        if (view != null) {
+            int length = container.getText() == null ? 0 : container.getText().length();
+            for (Annotation annotation : view.getAnnotations()) {
+                if (type.equals(annotation.getAtType())) {
+                    checkOffsets(annotation, length);
+                    annotations.add(annotation);
+                }
+            }
+            annotations.sort(BY_OFFSET);
+        }
+        int[] offsets = new int[annotations.size() * 2];
+        for (int i = 0; i < annotations.size(); i++) {
+            offsets[2 * i] = annotations.get(i).getStart().intValue();
+            offsets[2 * i + 1] = annotations.get(i).getEnd().intValue();
+        }
+        return offsets;
+    }
+
+    private static void checkOffsets(Annotation annotation, int length) {
+        Long start = annotation.getStart();
+        Long end = annotation.getEnd();
+        if (start == null || end == null) {
+            throw new IllegalArgumentException("Annotation " + annotation.getId() + " has no offsets");
+        }
+        if (start < 0 || start > end || end > length) {
+            throw new IllegalArgumentException(String.format(
+                    "Annotation %s has offsets %d-%d outside a text of %d characters",
+                    annotation.getId(), start, end, length));
+        }
+    }
+
+    private static View findView(Container container, String type) {
+        List<View> views = container.getViews();
+        if (views == null) {
+            return null;
+        }
+        for (int i = views.size() - 1; i >= 0; i--) {
+            if (views.get(i).contains(type)) {
+                return views.get(i);
+            }
+        }
+        return null;
+    }
+}
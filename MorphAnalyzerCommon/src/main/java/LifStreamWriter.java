@@ -0,0 +1,197 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Map;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Writes a LIF document straight to a {@link Writer} while tokens come out of
+ * the JCas, instead of building a {@code Container} with one {@code Annotation}
+ * object per token and pretty-printing it afterwards. Memory use does not grow
+ * with the number of tokens.
+ *
+ * Usage: {@link #startContainer}, {@link #startView}, any number of tokens,
+ * {@link #endView}, {@link #endContainer}, then {@link #close}.
+ */
+public class LifStreamWriter implements TokenSink, Closeable {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final JsonGenerator generator;
+    private final char[] idBuffer = new char[32];
+    private int viewCount;
+    private int tokenCount;
+    private boolean inFeatures;
+
+    public LifStreamWriter(Writer out, boolean prettyPrint) throws IOException {
+        generator = mapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (prettyPrint) {
+            generator.useDefaultPrettyPrinter();
+        }
+    }
+
+    /**
+     * Writes the envelope, the text and any views the container already has
+     * (e.g. from an upstream service), and opens the views array.
+     */
+    public void startContainer(Container container) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("discriminator", Uri.LIF);
+        generator.writeFieldName("payload");
+        generator.writeStartObject();
+        generator.writeObjectField("@context", new Container().getContext());
+        Map metadata = container.getMetadata();
+        generator.writeFieldName("metadata");
+        if (metadata == null) {
+            generator.writeStartObject();
+            generator.writeEndObject();
+        } else {
+            generator.writeObject(metadata);
+        }
+        generator.writeFieldName("text");
+        generator.writeStartObject();
+        generator.writeStringField("@value", container.getText());
+        if (container.getLanguage() != null) {
+            generator.writeStringField("@language", container.getLanguage());
+        }
+        generator.writeEndObject();
+        generator.writeFieldName("views");
+        generator.writeStartArray();
+        if (container.getViews() != null) {
+            for (View view : container.getViews()) {
+                generator.writeObject(view);
+                ++viewCount;
+            }
+        }
+    }
+
+    public void startView(String annotationType, String producer, String type) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", "v" + (++viewCount));
+        generator.writeFieldName("metadata");
+        generator.writeStartObject();
+        generator.writeFieldName("contains");
+        generator.writeStartObject();
+        generator.writeFieldName(annotationType);
+        generator.writeStartObject();
+        generator.writeStringField("producer", producer);
+        generator.writeStringField("type", type);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeFieldName("annotations");
+        generator.writeStartArray();
+    }
+
+    public void endView() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    public void endContainer() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void startToken(int id, int subId, int start, int end) {
+        try {
+            generator.writeStartObject();
+            int length = formatId(id, subId);
+            generator.writeFieldName("id");
+            generator.writeString(idBuffer, 0, length);
+            generator.writeNumberField("start", start);
+            generator.writeNumberField("end", end);
+            generator.writeStringField("@type", Uri.TOKEN);
+            inFeatures = false;
+            ++tokenCount;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void addFeature(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            if (!inFeatures) {
+                generator.writeFieldName("features");
+                generator.writeStartObject();
+                inFeatures = true;
+            }
+            generator.writeStringField(name, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endToken() {
+        try {
+            if (inFeatures) {
+                generator.writeEndObject();
+                inFeatures = false;
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Number of tokens written so far. */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /** Pushes everything written so far to the underlying writer. */
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    // Renders tok<id>[_<subId>] into the reusable buffer and returns its length
+    private int formatId(int id, int subId) {
+        idBuffer[0] = 't';
+        idBuffer[1] = 'o';
+        idBuffer[2] = 'k';
+        int length = appendInt(3, id);
+        if (subId >= 0) {
+            idBuffer[length++] = '_';
+            length = appendInt(length, subId);
+        }
+        return length;
+    }
+
+    private int appendInt(int offset, int value) {
+        if (value == 0) {
+            idBuffer[offset] = '0';
+            return offset + 1;
+        }
+        int digits = 0;
+        for (int v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        int pos = offset + digits;
+        for (int v = value; v > 0; v /= 10) {
+            idBuffer[--pos] = (char) ('0' + v % 10);
+        }
+        return offset + digits;
+    }
+}
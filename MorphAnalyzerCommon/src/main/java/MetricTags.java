@@ -0,0 +1,52 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/** Wrapper, language and variant a metric is recorded for. */
+public final class MetricTags {
+
+    private final String wrapper;
+    private final String language;
+    private final String variant;
+    private final int hash;
+
+    public MetricTags(String wrapper, String language, String variant) {
+        this.wrapper = wrapper;
+        this.language = language == null ? "" : language;
+        this.variant = variant == null ? "" : variant;
+        this.hash = (this.wrapper.hashCode() * 31 + this.language.hashCode()) * 31 + this.variant.hashCode();
+    }
+
+    public String getWrapper() {
+        return wrapper;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getVariant() {
+        return variant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricTags)) {
+            return false;
+        }
+        MetricTags other = (MetricTags) o;
+        return hash == other.hash && wrapper.equals(other.wrapper) && language.equals(other.language)
+                && variant.equals(other.variant);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return wrapper + "/" + language + "/" + variant;
+    }
+}
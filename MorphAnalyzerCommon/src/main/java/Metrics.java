@@ -0,0 +1,18 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/** Holds the registry the services report to. */
+public final class Metrics {
+
+    private static volatile MetricsRegistry registry = new InMemoryMetricsRegistry();
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    public static void setRegistry(MetricsRegistry registry) {
+        Metrics.registry = registry;
+    }
+}
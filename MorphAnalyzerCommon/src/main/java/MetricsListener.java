@@ -0,0 +1,59 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers the metrics as the MBean
+ * {@code org.lappsgrid.morph_analyzer:type=Metrics,context=<context path>},
+ * and the default {@link ModelManager} as {@code type=Models}, while the web
+ * application is deployed.
+ */
+public class MetricsListener implements ServletContextListener {
+
+    private ObjectName name;
+    private ObjectName modelsName;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        String context = ObjectName.quote(event.getServletContext().getContextPath().isEmpty()
+                ? "/" : event.getServletContext().getContextPath());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            modelsName = new ObjectName("org.lappsgrid.morph_analyzer:type=Models,context=" + context);
+            server.registerMBean(ModelManager.getDefault(), modelsName);
+        } catch (JMException e) {
+            event.getServletContext().log("Cannot register models MBean", e);
+            modelsName = null;
+        }
+        MetricsRegistry registry = Metrics.getRegistry();
+        if (!(registry instanceof InMemoryMetricsRegistry)) {
+            return;
+        }
+        try {
+            name = new ObjectName("org.lappsgrid.morph_analyzer:type=Metrics,context=" + context);
+            server.registerMBean(new JmxMetrics((InMemoryMetricsRegistry) registry), name);
+        } catch (JMException e) {
+            event.getServletContext().log("Cannot register metrics MBean", e);
+            name = null;
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        for (ObjectName registered : new ObjectName[] {name, modelsName}) {
+            if (registered == null) {
+                continue;
+            }
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (JMException e) {
+                event.getServletContext().log("Cannot unregister MBean " + registered, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link InMemoryMetricsRegistry}. Keys are
+ * {@code wrapper/language/variant}, with {@code /stage} appended for latencies.
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getDocuments();
+
+    Map<String, Long> getTokens();
+
+    Map<String, Long> getErrors();
+
+    Map<String, LatencySnapshot> getLatencies();
+}
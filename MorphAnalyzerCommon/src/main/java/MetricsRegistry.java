@@ -0,0 +1,18 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Receives the measurements of the services. The default,
+ * {@link InMemoryMetricsRegistry}, keeps them for the JMX bean and the
+ * {@code /metrics} servlet; another implementation can be installed with
+ * {@link Metrics#setRegistry} to forward them to a different system.
+ * Implementations must be thread-safe and cheap, they are called on every
+ * request.
+ */
+public interface MetricsRegistry {
+
+    void recordStage(MetricTags tags, Stage stage, long nanos);
+
+    void countDocument(MetricTags tags, long tokens);
+
+    void countError(MetricTags tags);
+}
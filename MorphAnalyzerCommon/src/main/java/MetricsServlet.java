@@ -0,0 +1,25 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Plain-text scrape endpoint for the model manager and, when it is the
+ * default {@link InMemoryMetricsRegistry}, the request metrics; another
+ * registry exports the request metrics itself.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        MetricsRegistry registry = Metrics.getRegistry();
+        if (registry instanceof InMemoryMetricsRegistry) {
+            MetricsTextFormat.write((InMemoryMetricsRegistry) registry, response.getWriter());
+        }
+        MetricsTextFormat.write(ModelManager.getDefault(), response.getWriter());
+    }
+}
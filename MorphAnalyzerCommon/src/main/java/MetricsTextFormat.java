@@ -0,0 +1,102 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Renders an {@link InMemoryMetricsRegistry} in the plain-text exposition
+ * format understood by Prometheus-style scrapers. Latencies are summaries in
+ * seconds; rates are derived by the scraper from the {@code _total} counters.
+ */
+public final class MetricsTextFormat {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private MetricsTextFormat() {
+    }
+
+    public static void write(InMemoryMetricsRegistry registry, Writer out) throws IOException {
+        Map<MetricTags, InMemoryMetricsRegistry.TaggedMetrics> metrics = registry.getMetrics();
+        out.write("# TYPE morph_stage_latency_seconds summary\n");
+        for (Map.Entry<MetricTags, InMemoryMetricsRegistry.TaggedMetrics> entry : metrics.entrySet()) {
+            for (Stage stage : Stage.ALL) {
+                LatencyHistogram histogram = entry.getValue().getLatency(stage);
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                String labels = labels(entry.getKey()) + ",stage=\"" + stage.getMetricName() + "\"";
+                for (double quantile : QUANTILES) {
+                    sample(out, "morph_stage_latency_seconds", labels + ",quantile=\"" + quantile + "\"",
+                            seconds(histogram.getValueAtQuantile(quantile)));
+                }
+                sample(out, "morph_stage_latency_seconds_sum", labels, seconds(histogram.getSum()));
+                sample(out, "morph_stage_latency_seconds_count", labels, Long.toString(histogram.getCount()));
+            }
+        }
+        counter(out, metrics, "morph_documents_total", InMemoryMetricsRegistry.TaggedMetrics::getDocuments);
+        counter(out, metrics, "morph_tokens_total", InMemoryMetricsRegistry.TaggedMetrics::getTokens);
+        counter(out, metrics, "morph_errors_total", InMemoryMetricsRegistry.TaggedMetrics::getErrors);
+    }
+
+    /** Resident model sizes, loads, evictions and load times of a model manager. */
+    public static void write(ModelManager models, Writer out) throws IOException {
+        Map<MetricTags, long[]> resident = models.getResident();
+        out.write("# TYPE morph_model_heap_bytes gauge\n");
+        for (Map.Entry<MetricTags, long[]> entry : resident.entrySet()) {
+            sample(out, "morph_model_heap_bytes", labels(entry.getKey()), Long.toString(entry.getValue()[0]));
+        }
+        out.write("# TYPE morph_model_off_heap_bytes gauge\n");
+        for (Map.Entry<MetricTags, long[]> entry : resident.entrySet()) {
+            sample(out, "morph_model_off_heap_bytes", labels(entry.getKey()), Long.toString(entry.getValue()[1]));
+        }
+        Map<MetricTags, ModelManager.ModelStats> stats = models.getStats();
+        out.write("# TYPE morph_model_loads_total counter\n");
+        for (Map.Entry<MetricTags, ModelManager.ModelStats> entry : stats.entrySet()) {
+            sample(out, "morph_model_loads_total", labels(entry.getKey()),
+                    Long.toString(entry.getValue().loads.sum()));
+        }
+        out.write("# TYPE morph_model_evictions_total counter\n");
+        for (Map.Entry<MetricTags, ModelManager.ModelStats> entry : stats.entrySet()) {
+            sample(out, "morph_model_evictions_total", labels(entry.getKey()),
+                    Long.toString(entry.getValue().evictions.sum()));
+        }
+        out.write("# TYPE morph_model_load_seconds summary\n");
+        for (Map.Entry<MetricTags, ModelManager.ModelStats> entry : stats.entrySet()) {
+            LatencyHistogram histogram = entry.getValue().loadTimes;
+            sample(out, "morph_model_load_seconds_sum", labels(entry.getKey()), seconds(histogram.getSum()));
+            sample(out, "morph_model_load_seconds_count", labels(entry.getKey()), Long.toString(histogram.getCount()));
+        }
+    }
+
+    private static void counter(Writer out, Map<MetricTags, InMemoryMetricsRegistry.TaggedMetrics> metrics,
+            String name, ToLongFunction<InMemoryMetricsRegistry.TaggedMetrics> value) throws IOException {
+        out.write("# TYPE " + name + " counter\n");
+        for (Map.Entry<MetricTags, InMemoryMetricsRegistry.TaggedMetrics> entry : metrics.entrySet()) {
+            sample(out, name, labels(entry.getKey()), Long.toString(value.applyAsLong(entry.getValue())));
+        }
+    }
+
+    private static void sample(Writer out, String name, String labels, String value) throws IOException {
+        out.write(name);
+        out.write('{');
+        out.write(labels);
+        out.write("} ");
+        out.write(value);
+        out.write('\n');
+    }
+
+    private static String labels(MetricTags tags) {
+        return "wrapper=\"" + escape(tags.getWrapper()) + "\",language=\"" + escape(tags.getLanguage())
+                + "\",variant=\"" + escape(tags.getVariant()) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
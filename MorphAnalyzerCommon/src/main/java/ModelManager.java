@@ -0,0 +1,237 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the models of every {@link EnginePool} of the application within one
+ * memory budget.
+ *
+ * Pools report each engine they load and destroy. The heap footprint of an
+ * engine is the growth of the used heap while it was created: approximate,
+ * since concurrent loads and collections blur it, but it is what a node has
+ * to be sized for. The off-heap footprint, e.g. the memory of an external
+ * tagger process, is the pool's {@link EnginePoolConfig#getOffHeapBytesPerEngine()}.
+ * Before a load that would exceed either budget, and again after it, the
+ * least recently used idle models of any pool are unloaded. Models with a
+ * borrowed engine are never unloaded, so under load the budget is best effort.
+ *
+ * Budgets are read from {@code -Dmodels.maxHeapBytes} and
+ * {@code -Dmodels.maxOffHeapBytes}, 0 (the default) meaning unbounded. All
+ * pools of a web application share {@link #getDefault()}.
+ */
+public class ModelManager implements ModelManagerMXBean {
+
+    private static final ModelManager DEFAULT = fromSystemProperties("models");
+
+    private final long maxHeapBytes;
+    private final long maxOffHeapBytes;
+    private final LongSupplier usedHeap;
+    private final Set<Model> models = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<MetricTags, ModelStats> stats = new ConcurrentHashMap<>();
+    private long heapBytes;
+    private long offHeapBytes;
+
+    public ModelManager(long maxHeapBytes, long maxOffHeapBytes) {
+        this(maxHeapBytes, maxOffHeapBytes, () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * @param usedHeap current heap usage in bytes, sampled around each engine load
+     */
+    public ModelManager(long maxHeapBytes, long maxOffHeapBytes, LongSupplier usedHeap) {
+        this.maxHeapBytes = maxHeapBytes;
+        this.maxOffHeapBytes = maxOffHeapBytes;
+        this.usedHeap = usedHeap;
+    }
+
+    public static ModelManager fromSystemProperties(String prefix) {
+        return new ModelManager(Long.getLong(prefix + ".maxHeapBytes", 0),
+                Long.getLong(prefix + ".maxOffHeapBytes", 0));
+    }
+
+    public static ModelManager getDefault() {
+        return DEFAULT;
+    }
+
+    Model register(EnginePool pool, EngineKey key, String name) {
+        MetricTags tags = new MetricTags(name, key.getLanguage(), key.getVariant());
+        Model model = new Model(pool, key, tags, stats.computeIfAbsent(tags, t -> new ModelStats()));
+        models.add(model);
+        return model;
+    }
+
+    void unregister(Model model) {
+        models.remove(model);
+    }
+
+    /**
+     * Makes room for one more engine of the model, sized like its last load,
+     * and returns the heap usage the load is measured from.
+     */
+    long beforeLoad(Model model, long offHeapBytes) {
+        synchronized (this) {
+            makeRoom(model, model.heapPerEngine, offHeapBytes);
+        }
+        return usedHeap.getAsLong();
+    }
+
+    /** Accounts for a loaded engine and returns its heap footprint. */
+    long loaded(Model model, long heapBefore, long loadNanos, long offHeapBytes) {
+        long heap = Math.max(0, usedHeap.getAsLong() - heapBefore);
+        model.stats.loads.increment();
+        model.stats.loadTimes.record(loadNanos);
+        synchronized (this) {
+            model.heapPerEngine = heap;
+            model.heapBytes += heap;
+            model.offHeapBytes += offHeapBytes;
+            model.engines++;
+            this.heapBytes += heap;
+            this.offHeapBytes += offHeapBytes;
+            makeRoom(model, 0, 0);
+        }
+        return heap;
+    }
+
+    synchronized void unloaded(Model model, long heapBytes, long offHeapBytes) {
+        model.heapBytes -= heapBytes;
+        model.offHeapBytes -= offHeapBytes;
+        model.engines--;
+        this.heapBytes -= heapBytes;
+        this.offHeapBytes -= offHeapBytes;
+    }
+
+    // Called with the lock held; the pool calls back into unloaded() on this thread
+    private void makeRoom(Model target, long heap, long offHeap) {
+        Set<Model> busy = new HashSet<>();
+        while (exceeds(heap, offHeap)) {
+            Model lru = null;
+            for (Model model : models) {
+                if (model != target && model.engines > 0 && !busy.contains(model)
+                        && (lru == null || model.lastAccess < lru.lastAccess)) {
+                    lru = model;
+                }
+            }
+            if (lru == null) {
+                return;
+            }
+            if (lru.pool.evict(lru.key)) {
+                lru.stats.evictions.increment();
+            } else {
+                busy.add(lru);
+            }
+        }
+    }
+
+    private boolean exceeds(long heap, long offHeap) {
+        return maxHeapBytes > 0 && heapBytes + heap > maxHeapBytes
+                || maxOffHeapBytes > 0 && offHeapBytes + offHeap > maxOffHeapBytes;
+    }
+
+    @Override
+    public long getMaxHeapBytes() {
+        return maxHeapBytes;
+    }
+
+    @Override
+    public long getMaxOffHeapBytes() {
+        return maxOffHeapBytes;
+    }
+
+    @Override
+    public synchronized long getHeapBytes() {
+        return heapBytes;
+    }
+
+    @Override
+    public synchronized long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    @Override
+    public Map<String, Long> getResidentHeapBytes() {
+        Map<String, Long> values = new TreeMap<>();
+        getResident().forEach((tags, bytes) -> values.put(tags.toString(), bytes[0]));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getResidentOffHeapBytes() {
+        Map<String, Long> values = new TreeMap<>();
+        getResident().forEach((tags, bytes) -> values.put(tags.toString(), bytes[1]));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getLoads() {
+        Map<String, Long> values = new TreeMap<>();
+        stats.forEach((tags, s) -> values.put(tags.toString(), s.loads.sum()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getEvictions() {
+        Map<String, Long> values = new TreeMap<>();
+        stats.forEach((tags, s) -> values.put(tags.toString(), s.evictions.sum()));
+        return values;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLoadTimes() {
+        Map<String, LatencySnapshot> values = new TreeMap<>();
+        stats.forEach((tags, s) -> values.put(tags.toString(), s.loadTimes.snapshot()));
+        return values;
+    }
+
+    /** Heap and off-heap bytes of every loaded model. */
+    synchronized Map<MetricTags, long[]> getResident() {
+        Map<MetricTags, long[]> resident = new HashMap<>();
+        for (Model model : models) {
+            if (model.engines > 0) {
+                long[] bytes = resident.computeIfAbsent(model.tags, t -> new long[2]);
+                bytes[0] += model.heapBytes;
+                bytes[1] += model.offHeapBytes;
+            }
+        }
+        return resident;
+    }
+
+    Map<MetricTags, ModelStats> getStats() {
+        return stats;
+    }
+
+    /** Load and eviction history of a pool name, language and variant; outlives the pools. */
+    static final class ModelStats {
+        final LongAdder loads = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LatencyHistogram loadTimes = new LatencyHistogram();
+    }
+
+    /** The engines of one key of one pool. Sizes are guarded by the manager. */
+    static final class Model {
+        final EnginePool pool;
+        final EngineKey key;
+        final MetricTags tags;
+        final ModelStats stats;
+        volatile long lastAccess = System.nanoTime();
+        long heapPerEngine;
+        long heapBytes;
+        long offHeapBytes;
+        int engines;
+
+        Model(EnginePool pool, EngineKey key, MetricTags tags, ModelStats stats) {
+            this.pool = pool;
+            this.key = key;
+            this.tags = tags;
+            this.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link ModelManager}. Keys are {@code pool/language/variant};
+ * load times are in nanoseconds.
+ */
+public interface ModelManagerMXBean {
+
+    long getMaxHeapBytes();
+
+    long getMaxOffHeapBytes();
+
+    long getHeapBytes();
+
+    long getOffHeapBytes();
+
+    Map<String, Long> getResidentHeapBytes();
+
+    Map<String, Long> getResidentOffHeapBytes();
+
+    Map<String, Long> getLoads();
+
+    Map<String, Long> getEvictions();
+
+    Map<String, LatencySnapshot> getLoadTimes();
+}
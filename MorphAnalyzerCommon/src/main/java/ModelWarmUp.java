@@ -0,0 +1,57 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the engines of a service on a background thread and runs a short
+ * sentence through each of them, so the first real request for a language
+ * does not pay for model loading; the {@link SharedTypeSystem} is
+ * initialized first. {@link Readiness} reports not ready until
+ * all keys have been processed; a key that fails to load is reported and
+ * skipped rather than keeping the application unready forever.
+ */
+public final class ModelWarmUp {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelWarmUp.class);
+
+    private ModelWarmUp() {
+    }
+
+    public static Future<?> start(MorphAnalyzerService service, List<EngineKey> keys) {
+        String name = service.getClass().getName();
+        Readiness.begin(name);
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "warm-up-" + service.getClass().getSimpleName());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            return executor.submit(() -> {
+                try {
+                    try {
+                        SharedTypeSystem.initialize();
+                    } catch (Exception e) {
+                        log.error("Type system initialization failed", e);
+                    }
+                    for (EngineKey key : keys) {
+                        try {
+                            service.warmUp(key);
+                        } catch (Exception e) {
+                            log.error("Warm-up of {} for {} failed", name, key, e);
+                        }
+                    }
+                } finally {
+                    Readiness.done(name);
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,736 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.lappsgrid.api.ProcessingService;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.Serializer;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Common processing path of the morphological analyzer services: borrow an
+ * engine for the requested language/variant, run the document through a
+ * recycled CAS and copy the analysis into a new LIF view.
+ *
+ * Subclasses supply the engine pool and the mapping from the JCas to LIF
+ * annotations.
+ */
+public abstract class MorphAnalyzerService implements ProcessingService, BatchMorphService {
+
+    public abstract EnginePool getEnginePool();
+
+    protected abstract AnalysisRunner getRunner();
+
+    /** Tagset name recorded in the view's contains section. */
+    protected abstract String getProducerType();
+
+    protected abstract void addAnnotations(JCas jCas, String text, TokenSink sink);
+
+    /** Languages declared in the service metadata. */
+    public abstract List<String> getLanguages();
+
+    /** Short text run through every engine during warm-up. */
+    protected static final String WARM_UP_TEXT = "Warm up .";
+
+    /** Engine preloaded for a language; subclasses pick a variant where the models need one. */
+    protected EngineKey getWarmUpKey(String language) {
+        return new EngineKey(language, null);
+    }
+
+    /**
+     * Releases the engines, threads and external processes of the service when
+     * the web application is undeployed. Does nothing by default.
+     */
+    public void shutdown() {
+    }
+
+    /** Engines loaded by the warm-up, one per declared language. */
+    public List<EngineKey> getWarmUpKeys() {
+        List<EngineKey> keys = new ArrayList<>();
+        for (String language : getLanguages()) {
+            keys.add(getWarmUpKey(language));
+        }
+        return keys;
+    }
+
+    /** Loads the engine for {@code key} into the pool and tags a short sentence with it. */
+    public void warmUp(EngineKey key) throws UIMAException {
+        getEnginePool().prewarm(key);
+        Container container = new Container();
+        container.setText(WARM_UP_TEXT);
+        analyzeToJson(key, container, WARM_UP_TEXT);
+    }
+
+    /** Documents longer than this many characters are tagged window by window. */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private boolean prettyPrint = false;
+
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    private RequestParser requestParser;
+
+    private static final int MAX_INITIAL_OUTPUT_CAPACITY = 1 << 20;
+
+    private static final String VERSION_RESOURCE = "version.properties";
+
+    private volatile String serviceVersion;
+
+    private static final Logger log = LoggerFactory.getLogger(MorphAnalyzerService.class);
+
+    private static final int MAX_TAG_SETS = 32;
+
+    private static final String OTHER = "other";
+
+    private final ConcurrentMap<EngineKey, MetricTags> metricTags = new ConcurrentHashMap<>();
+
+    private final MetricTags otherTags = new MetricTags(getClass().getSimpleName(), OTHER, null);
+
+    /** Whether requests carry a model variant ({@code "lang; variant; text"}). */
+    protected boolean hasVariant() {
+        return true;
+    }
+
+    protected RequestParser getRequestParser() {
+        if (requestParser == null) {
+            requestParser = new RequestParser(hasVariant());
+        }
+        return requestParser;
+    }
+
+    /**
+     * Admission control for {@code execute}, or {@code null} (the default) to tag
+     * on the calling thread without limits.
+     */
+    protected AdmissionController getAdmission() {
+        return null;
+    }
+
+    /**
+     * Whole-document result cache consulted before admission control, or
+     * {@code null} (the default) to tag every request.
+     */
+    protected ResultCache getResultCache() {
+        return null;
+    }
+
+    /**
+     * Part of the result cache key, so a new release does not serve old results.
+     * Read from {@code version.properties} next to the service class, which the
+     * build filters with the project version; the jar manifest is a fallback,
+     * since the wrappers are deployed as exploded classes without one.
+     */
+    protected String getServiceVersion() {
+        String version = serviceVersion;
+        if (version == null) {
+            version = readServiceVersion(getClass());
+            serviceVersion = version;
+        }
+        return version;
+    }
+
+    static String readServiceVersion(Class<?> type) {
+        try (InputStream in = type.getResourceAsStream(VERSION_RESOURCE)) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                String version = properties.getProperty("version");
+                if (version != null && !version.isEmpty() && !version.startsWith("${")) {
+                    return version;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot read {} of {}", VERSION_RESOURCE, type.getName(), e);
+        }
+        Package pkg = type.getPackage();
+        String version = pkg == null ? null : pkg.getImplementationVersion();
+        return version == null ? "dev" : version;
+    }
+
+    /**
+     * Hash of everything the JSON of a request depends on. Plain text requests
+     * hash the text; LIF requests hash the whole container, since its metadata and
+     * views are copied to the output and its tokens replace the segmentation.
+     * The window size is included when the document is tagged in windows, since
+     * sentences restart at window cuts.
+     */
+    protected String getCacheKey(AnalysisRequest request) {
+        Container container = request.getContainer();
+        boolean plain = (container.getViews() == null || container.getViews().isEmpty())
+                && (container.getMetadata() == null || container.getMetadata().isEmpty());
+        String text = request.getText();
+        boolean windowed = windowSize > 0 && text != null && text.length() > windowSize;
+        return ResultCache.key(getClass().getName(), getServiceVersion(), request.getLanguage(),
+                request.getVariant(), String.valueOf(prettyPrint),
+                windowed ? Integer.toString(windowSize) : "unwindowed", plain ? text : Serializer.toJson(container));
+    }
+
+    @Override
+    public String execute(String input) {
+        StageClock clock = new StageClock();
+        AnalysisRequest request;
+        try {
+            request = getRequestParser().parse(input);
+        } catch (IllegalArgumentException e) {
+            Metrics.getRegistry().countError(getMetricTags(null));
+            return new Data<String>(Uri.ERROR, e.getMessage()).asJson();
+        }
+        clock.mark(Stage.PARSE);
+        return execute(request, clock);
+    }
+
+    /**
+     * Tags an already parsed request, e.g. one a router has parsed to pick the
+     * service; otherwise the same as {@link #execute(String)}.
+     */
+    public String execute(AnalysisRequest request) {
+        return execute(request, new StageClock());
+    }
+
+    private String execute(AnalysisRequest request, StageClock clock) {
+        MetricTags tags = getMetricTags(request.getEngineKey());
+        String cacheKey = getResultCache() == null ? null : getCacheKey(request);
+        String cached = cached(cacheKey, tags, clock);
+        if (cached != null) {
+            return cached;
+        }
+        AdmissionController admission = getAdmission();
+        if (admission == null) {
+            return execute(request, tags, clock, cacheKey);
+        }
+        try {
+            return admission.call(request.getEngineKey(), () -> {
+                // Time spent queued counts as acquisition
+                clock.mark(Stage.ACQUIRE);
+                return execute(request, tags, clock, cacheKey);
+            });
+        } catch (RejectedExecutionException e) {
+            return rejected(request, tags, "Service busy, try again later");
+        } catch (TimeoutException e) {
+            return rejected(request, tags, "Timed out after " + admission.getConfig().getTimeoutMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return rejected(request, tags, "Interrupted");
+        } catch (ExecutionException e) {
+            Metrics.getRegistry().countError(tags);
+            log.error("Tagging failed for {}", request.getEngineKey(), e.getCause());
+            return new Data<String>(Uri.ERROR, "Tagging failed: " + e.getCause().getMessage()).asJson();
+        }
+    }
+
+    /**
+     * Parses and tags the request without waiting for its result; the future
+     * yields the same JSON as {@link #execute}. With admission control the
+     * request is queued like any other and the future can be cancelled.
+     */
+    public Future<String> submit(String input) {
+        AdmissionController admission = getAdmission();
+        if (admission == null) {
+            return CompletableFuture.completedFuture(execute(input));
+        }
+        StageClock clock = new StageClock();
+        AnalysisRequest request;
+        try {
+            request = getRequestParser().parse(input);
+        } catch (IllegalArgumentException e) {
+            Metrics.getRegistry().countError(getMetricTags(null));
+            return CompletableFuture.completedFuture(new Data<String>(Uri.ERROR, e.getMessage()).asJson());
+        }
+        clock.mark(Stage.PARSE);
+        MetricTags tags = getMetricTags(request.getEngineKey());
+        String cacheKey = getResultCache() == null ? null : getCacheKey(request);
+        String cached = cached(cacheKey, tags, clock);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        try {
+            return admission.submit(request.getEngineKey(), () -> {
+                clock.mark(Stage.ACQUIRE);
+                return execute(request, tags, clock, cacheKey);
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(rejected(request, tags, "Service busy, try again later"));
+        }
+    }
+
+    private String execute(AnalysisRequest request, MetricTags tags, StageClock clock, String cacheKey) {
+        try {
+            String json = analyzeToJson(request.getEngineKey(), request.getContainer(), request.getText(), clock);
+            if (cacheKey != null) {
+                getResultCache().put(cacheKey, json);
+            }
+            clock.record(Metrics.getRegistry(), tags);
+            return json;
+        } catch (IllegalArgumentException e) {
+            // Rejected input, e.g. LIF offsets outside the text; no engine was used
+            Metrics.getRegistry().countError(tags);
+            log.warn("Invalid request for {}: {}", request.getEngineKey(), e.getMessage());
+            return new Data<String>(Uri.ERROR, e.getMessage()).asJson();
+        } catch (UIMAException | RuntimeException e) {
+            Metrics.getRegistry().countError(tags);
+            log.error("Tagging failed for {}", request.getEngineKey(), e);
+            return new Data<String>(Uri.ERROR, "Tagging failed: " + e.getMessage()).asJson();
+        }
+    }
+
+    // A hit is reported as a document with only parse and serialize time
+    private String cached(String cacheKey, MetricTags tags, StageClock clock) {
+        String json = cacheKey == null ? null : getResultCache().get(cacheKey);
+        if (json != null) {
+            clock.mark(Stage.SERIALIZE);
+            clock.record(Metrics.getRegistry(), tags);
+        }
+        return json;
+    }
+
+    private String rejected(AnalysisRequest request, MetricTags tags, String reason) {
+        Metrics.getRegistry().countError(tags);
+        log.warn("Rejected request for {}: {}", request.getEngineKey(), reason);
+        return new Data<String>(Uri.ERROR, reason).asJson();
+    }
+
+    /**
+     * Tags the metrics of a request. Languages the service does not declare, and
+     * variants beyond the first few, share one tag set so that arbitrary request
+     * values cannot grow the registry.
+     */
+    protected MetricTags getMetricTags(EngineKey key) {
+        MetricTags tags = key == null ? null : metricTags.get(key);
+        if (tags != null) {
+            return tags;
+        }
+        if (key == null || !getLanguages().contains(key.getLanguage()) || metricTags.size() >= MAX_TAG_SETS) {
+            return otherTags;
+        }
+        return metricTags.computeIfAbsent(key,
+                k -> new MetricTags(getClass().getSimpleName(), k.getLanguage(), k.getVariant()));
+    }
+
+    public boolean isPrettyPrint() {
+        return prettyPrint;
+    }
+
+    /** Indent the JSON returned by {@code execute}; compact output is the default. */
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Maximum number of characters tagged in one CAS when streaming; longer documents
+     * are split into sentence windows. Zero or less disables the split.
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    protected void analyze(EngineKey key, Container container, String document) throws UIMAException {
+        View view = container.newView();
+        tag(key, document, LifSegmenter.forContainer(container), new ViewTokenSink(view), new StageClock());
+        view.addContains(Uri.TOKEN, this.getClass().getName(), getProducerType());
+    }
+
+    protected void analyze(AnalysisEngine engine, EngineKey key, Container container, String document)
+            throws UIMAException {
+        View view = container.newView();
+        tag(engine, key, document, LifSegmenter.forContainer(container), new ViewTokenSink(view), new StageClock());
+        view.addContains(Uri.TOKEN, this.getClass().getName(), getProducerType());
+    }
+
+    /**
+     * Tags the document into a {@link MorphLayer}, for callers that hold results
+     * in memory before writing them out.
+     */
+    public MorphLayer analyzeToLayer(EngineKey key, Container container, String document) throws UIMAException {
+        MorphLayer layer = new MorphLayer(Math.max(document.length() / 6, 16));
+        tag(key, document, LifSegmenter.forContainer(container), layer, new StageClock());
+        return layer;
+    }
+
+    /** Leases an engine for {@code key} and tags the text with it. */
+    protected void tag(EngineKey key, String text, Segmenter segmenter, TokenSink sink, StageClock clock)
+            throws UIMAException {
+        EngineLease lease = getEnginePool().lease(key);
+        try {
+            tag(lease.getEngine(), key, text, segmenter, sink, clock);
+            lease.close();
+        } finally {
+            lease.invalidate();
+        }
+    }
+
+    /**
+     * Tags a document, or one window of it, on the given engine and writes its
+     * tokens to the sink. The default runs the whole text through the engine and
+     * maps the JCas with {@link #addAnnotations}; services that can skip part of
+     * the work (e.g. with a cache) override this.
+     */
+    protected void tag(AnalysisEngine engine, EngineKey key, String text, Segmenter segmenter, TokenSink sink,
+            StageClock clock) throws UIMAException {
+        getRunner().run(engine, key.getLanguage(), text, clock.timed(segmenter), jCas -> {
+            clock.mark(Stage.PROCESS);
+            addAnnotations(jCas, text, sink);
+            clock.mark(Stage.ANNOTATE);
+            return null;
+        });
+    }
+
+    /**
+     * Tags the document and returns the LIF JSON, streamed out of the JCas without
+     * materializing an annotation object per token.
+     */
+    protected String analyzeToJson(EngineKey key, Container container, String document) throws UIMAException {
+        return analyzeToJson(key, container, document, new StageClock());
+    }
+
+    private String analyzeToJson(EngineKey key, Container container, String document, StageClock clock)
+            throws UIMAException {
+        StringWriter out = new StringWriter(initialOutputCapacity(document));
+        try {
+            write(key, container, document, out, clock);
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+        String json = out.toString();
+        clock.mark(Stage.SERIALIZE);
+        return json;
+    }
+
+    /**
+     * A first guess at the size of the JSON, capped so that large documents let the
+     * writer grow with the output instead of reserving it all before tagging.
+     */
+    static int initialOutputCapacity(String document) {
+        return (int) Math.min(document.length() * 4L, MAX_INITIAL_OUTPUT_CAPACITY);
+    }
+
+    /**
+     * Tags the document and streams the LIF output to {@code out}. The views the
+     * container already has are copied and a new token view is appended; if one of
+     * them holds tokens, those tokens (and sentences) are analyzed as they are.
+     */
+    public void write(EngineKey key, Container container, String document, Writer out)
+            throws UIMAException, IOException {
+        StageClock clock = new StageClock();
+        MetricTags tags = getMetricTags(key);
+        try {
+            write(key, container, document, out, clock);
+        } catch (UIMAException | IOException | RuntimeException e) {
+            Metrics.getRegistry().countError(tags);
+            throw e;
+        }
+        clock.record(Metrics.getRegistry(), tags);
+    }
+
+    private void write(EngineKey key, Container container, String document, Writer out, StageClock clock)
+            throws UIMAException, IOException {
+        try (LifStreamWriter lif = new LifStreamWriter(out, prettyPrint)) {
+            lif.startContainer(container);
+            lif.startView(Uri.TOKEN, this.getClass().getName(), getProducerType());
+            clock.mark(Stage.SERIALIZE);
+            Segmenter segmenter = LifSegmenter.forContainer(container);
+            clock.mark(Stage.POPULATE);
+            if (windowSize > 0 && document.length() > windowSize) {
+                writeWindows(key, document, segmenter, lif, clock);
+            } else {
+                tag(key, document, segmenter, lif, clock);
+            }
+            lif.endView();
+            lif.endContainer();
+            clock.addTokens(lif.getTokenCount());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        clock.mark(Stage.SERIALIZE);
+    }
+
+    /**
+     * Tags a long document one sentence window at a time on a single engine. The
+     * tokens of each window are written, with document offsets and continuing ids,
+     * as soon as the window is done, so only one window is held in a CAS.
+     */
+    private void writeWindows(EngineKey key, String document, Segmenter segmenter, LifStreamWriter lif,
+            StageClock clock) throws UIMAException, IOException {
+        OffsetTokenSink sink = new OffsetTokenSink(lif);
+        try (EngineLease lease = getEnginePool().lease(key)) {
+            try {
+                int start = 0;
+                while (start < document.length()) {
+                    int end = segmenter.windowEnd(document, start, windowSize);
+                    String window = document.substring(start, end);
+                    sink.startWindow(start);
+                    tag(lease.getEngine(), key, window, segmenter.window(start, end), sink, clock);
+                    lif.flush();
+                    clock.mark(Stage.SERIALIZE);
+                    start = end;
+                }
+            } catch (UIMAException | RuntimeException e) {
+                lease.invalidate();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Tags a batch of documents. Documents are grouped by language and variant so
+     * each group borrows a single engine; results are returned in input order.
+     * A document without language or text gets an error result of its own.
+     */
+    public Data[] executeBatch(List<BatchDocument> documents) {
+        Map<EngineKey, List<Integer>> groups = new LinkedHashMap<>();
+        Data[] results = new Data[documents.size()];
+        for (int i = 0; i < documents.size(); i++) {
+            BatchDocument document = documents.get(i);
+            try {
+                checkDocument(document);
+            } catch (IllegalArgumentException e) {
+                results[i] = error(document, e);
+                continue;
+            }
+            groups.computeIfAbsent(document.getEngineKey(), k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<EngineKey, List<Integer>> group : groups.entrySet()) {
+            Iterator<BatchDocument> members = group.getValue().stream().map(documents::get).iterator();
+            Iterator<Integer> slots = group.getValue().iterator();
+            processGroup(group.getKey(), members, (document, result) -> results[slots.next()] = result);
+        }
+        return results;
+    }
+
+    /**
+     * Tags a stream of documents, writing each result to the sink as soon as it is
+     * ready. Consecutive documents with the same language and variant share one
+     * engine, so callers should send streams grouped by language/variant.
+     */
+    public void executeBatch(Iterator<BatchDocument> documents, BatchSink sink) {
+        List<BatchDocument> run = new ArrayList<>();
+        EngineKey runKey = null;
+        while (documents.hasNext()) {
+            BatchDocument document = documents.next();
+            try {
+                checkDocument(document);
+            } catch (IllegalArgumentException e) {
+                // Keep the results in input order
+                if (runKey != null) {
+                    processGroup(runKey, run.iterator(), sink);
+                    run.clear();
+                    runKey = null;
+                }
+                sink.write(document, error(document, e));
+                continue;
+            }
+            EngineKey key = document.getEngineKey();
+            if (runKey != null && !runKey.equals(key)) {
+                processGroup(runKey, run.iterator(), sink);
+                run.clear();
+            }
+            runKey = key;
+            run.add(document);
+        }
+        if (runKey != null) {
+            processGroup(runKey, run.iterator(), sink);
+        }
+    }
+
+    /**
+     * Executor for {@link #executeParallel}, or {@code null} (the default) to tag
+     * the batch on the calling thread.
+     */
+    protected ExecutorService getBatchWorkers() {
+        return null;
+    }
+
+    /**
+     * Tags independent documents on the service's batch workers, preserving input
+     * order. Each document borrows its own engine, so for full throughput the
+     * pool's per-key maximum and the CAS pool size should be at least the number
+     * of workers.
+     */
+    public Data[] executeParallel(List<BatchDocument> documents) {
+        ExecutorService workers = getBatchWorkers();
+        return workers == null ? executeBatch(documents) : executeBatch(documents, workers);
+    }
+
+    /**
+     * Tags independent documents concurrently on the given executor and returns the
+     * results in input order. Every task borrows its own engine, so the pool's
+     * per-key maximum and the CAS pool size bound the effective parallelism.
+     */
+    public Data[] executeBatch(List<BatchDocument> documents, ExecutorService workers) {
+        List<Future<Data<?>>> futures = new ArrayList<>(documents.size());
+        for (BatchDocument document : documents) {
+            futures.add(workers.submit(() -> processDocument(document)));
+        }
+        Data[] results = new Data[documents.size()];
+        for (int i = 0; i < results.length; i++) {
+            try {
+                results[i] = futures.get(i).get();
+            } catch (ExecutionException e) {
+                results[i] = error(documents.get(i), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < results.length; j++) {
+                    futures.get(j).cancel(true);
+                    results[j] = error(documents.get(j), e);
+                }
+                break;
+            }
+        }
+        return results;
+    }
+
+    private Data<?> processDocument(BatchDocument document) {
+        try {
+            checkDocument(document);
+            Container container = new Container();
+            container.setText(document.getText());
+            analyze(document.getEngineKey(), container, document.getText());
+            return new DataContainer(container);
+        } catch (UIMAException | RuntimeException e) {
+            return error(document, e);
+        }
+    }
+
+    /** Rejects a document that cannot be tagged before it reaches an engine. */
+    private static void checkDocument(BatchDocument document) {
+        if (document.getLanguage() == null) {
+            throw new IllegalArgumentException("No language");
+        }
+        if (document.getText() == null) {
+            throw new IllegalArgumentException("No text");
+        }
+    }
+
+    private void processGroup(EngineKey key, Iterator<BatchDocument> documents, BatchSink sink) {
+        processGroup(key, documents, (engine, document) -> {
+            Container container = new Container();
+            container.setText(document.getText());
+            analyze(engine, key, container, document.getText());
+            sink.write(document, new DataContainer(container));
+        }, (document, e) -> sink.write(document, error(document, e)));
+    }
+
+    /**
+     * Runs the task for each document on one engine leased for the group. After a
+     * failure of the engine it is discarded and the next document gets a fresh
+     * one; a document rejected as invalid input keeps the engine.
+     */
+    private void processGroup(EngineKey key, Iterator<BatchDocument> documents, GroupTask task,
+            BiConsumer<BatchDocument, Exception> onError) {
+        EngineLease lease = null;
+        try {
+            while (documents.hasNext()) {
+                BatchDocument document = documents.next();
+                if (lease == null) {
+                    try {
+                        lease = getEnginePool().lease(key);
+                    } catch (ResourceInitializationException e) {
+                        onError.accept(document, e);
+                        continue;
+                    }
+                }
+                try {
+                    task.run(lease.getEngine(), document);
+                } catch (IllegalArgumentException e) {
+                    onError.accept(document, e);
+                } catch (UIMAException | RuntimeException e) {
+                    // Do not trust the engine after a failure; continue with a fresh one
+                    lease.invalidate();
+                    lease = null;
+                    onError.accept(document, e);
+                }
+            }
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+
+    private interface GroupTask {
+
+        void run(AnalysisEngine engine, BatchDocument document) throws UIMAException;
+    }
+
+    @Override
+    public MorphBatchResponse tagBatch(BatchDocument[] documents) {
+        Map<EngineKey, List<Integer>> groups = new LinkedHashMap<>();
+        MorphBatchResult[] results = new MorphBatchResult[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            BatchDocument document = documents[i];
+            try {
+                checkDocument(document);
+            } catch (IllegalArgumentException e) {
+                Metrics.getRegistry().countError(getMetricTags(null));
+                results[i] = new MorphBatchResult(document.getId());
+                results[i].setError(error(document, e).getPayload());
+                continue;
+            }
+            groups.computeIfAbsent(document.getEngineKey(), k -> new ArrayList<>()).add(i);
+        }
+        FeatureDictionary names = new FeatureDictionary();
+        FeatureDictionary values = new FeatureDictionary();
+        for (Map.Entry<EngineKey, List<Integer>> group : groups.entrySet()) {
+            EngineKey key = group.getKey();
+            MetricTags tags = getMetricTags(key);
+            Iterator<BatchDocument> members = group.getValue().stream().map(i -> documents[i]).iterator();
+            Iterator<Integer> slots = group.getValue().iterator();
+            processGroup(key, members, (engine, document) -> {
+                StageClock clock = new StageClock();
+                String text = document.getText();
+                MorphLayer layer = new MorphLayer(Math.max(text.length() / 6, 16), names, values);
+                tag(engine, key, text, WhitespaceSegmenter.INSTANCE, layer, clock);
+                MorphBatchResult result = new MorphBatchResult(document.getId());
+                layer.pack(result);
+                clock.mark(Stage.SERIALIZE);
+                clock.addTokens(layer.size());
+                clock.record(Metrics.getRegistry(), tags);
+                results[slots.next()] = result;
+            }, (document, e) -> {
+                Metrics.getRegistry().countError(tags);
+                MorphBatchResult result = new MorphBatchResult(document.getId());
+                result.setError(error(document, e).getPayload());
+                results[slots.next()] = result;
+            });
+        }
+        return new MorphBatchResponse(names.toArray(), values.toArray(), results);
+    }
+
+    private static Data<String> error(BatchDocument document, Exception e) {
+        String message = String.format("Document %s failed: %s", document.getId(), e.getMessage());
+        return new Data<>(Uri.ERROR, message);
+    }
+}
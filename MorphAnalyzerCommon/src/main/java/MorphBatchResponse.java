@@ -0,0 +1,58 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Response of {@link BatchMorphService#tagBatch}. The feature codes of every
+ * result index into the {@code names} and {@code values} dictionaries, which
+ * are shared by the whole batch.
+ */
+public class MorphBatchResponse {
+
+    private String[] names;
+    private String[] values;
+    private MorphBatchResult[] results;
+
+    public MorphBatchResponse() {
+    }
+
+    public MorphBatchResponse(String[] names, String[] values, MorphBatchResult[] results) {
+        this.names = names;
+        this.values = values;
+        this.results = results;
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    public void setNames(String[] names) {
+        this.names = names;
+    }
+
+    public String[] getValues() {
+        return values;
+    }
+
+    public void setValues(String[] values) {
+        this.values = values;
+    }
+
+    public MorphBatchResult[] getResults() {
+        return results;
+    }
+
+    public void setResults(MorphBatchResult[] results) {
+        this.results = results;
+    }
+
+    /** Value of the named feature of a token of a result, or {@code null} if the token does not have it. */
+    public String getFeature(MorphBatchResult result, int token, String name) {
+        int[] features = result.getFeatures();
+        int start = token == 0 ? 0 : result.getFeatureEnds()[token - 1];
+        for (int i = start; i < result.getFeatureEnds()[token]; i += 2) {
+            if (names[features[i]].equals(name)) {
+                return values[features[i + 1]];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * The tokens of one document of a {@link MorphBatchResponse}, in columns:
+ * <ul>
+ * <li>{@code ids}: id and sub id of each token (sub id -1 if none), i.e. the
+ * LIF id {@code tok<id>} or {@code tok<id>_<subId>};</li>
+ * <li>{@code offsets}: start and end of each token;</li>
+ * <li>{@code featureEnds}: for each token, the end of its pairs in
+ * {@code features};</li>
+ * <li>{@code features}: name code and value code pairs.</li>
+ * </ul>
+ * A failed document has an {@code error} and empty columns.
+ */
+public class MorphBatchResult {
+
+    private static final int[] NONE = new int[0];
+
+    private String id;
+    private String error;
+    private int[] ids = NONE;
+    private int[] offsets = NONE;
+    private int[] featureEnds = NONE;
+    private int[] features = NONE;
+
+    public MorphBatchResult() {
+    }
+
+    public MorphBatchResult(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    public void setIds(int[] ids) {
+        this.ids = ids;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public void setOffsets(int[] offsets) {
+        this.offsets = offsets;
+    }
+
+    public int[] getFeatureEnds() {
+        return featureEnds;
+    }
+
+    public void setFeatureEnds(int[] featureEnds) {
+        this.featureEnds = featureEnds;
+    }
+
+    public int[] getFeatures() {
+        return features;
+    }
+
+    public void setFeatures(int[] features) {
+        this.features = features;
+    }
+
+    /** Number of tokens. */
+    public int size() {
+        return featureEnds.length;
+    }
+}
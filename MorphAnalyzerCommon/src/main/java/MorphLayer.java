@@ -0,0 +1,184 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.lappsgrid.serialization.lif.View;
+
+/**
+ * Column-oriented in-memory token layer. Offsets and ids are kept in primitive
+ * arrays, and feature names and values in {@link FeatureDictionary}s shared by
+ * all tokens of the layer (and, optionally, by several layers), with each token
+ * holding only pairs of dictionary codes. Token ids
+ * are formatted only when asked for. Compared with one {@code Annotation} and
+ * feature {@code HashMap} per token this needs about a tenth of the heap.
+ *
+ * The layer is filled as a {@link TokenSink} and written out with
+ * {@link #writeTo(LifStreamWriter)}, or turned into annotations with
+ * {@link #toView(View)}. It is not thread-safe.
+ */
+public class MorphLayer implements TokenSink {
+
+    private static final int FIELDS = 4;
+
+    // id, subId, start, end per token
+    private int[] tokens;
+    // End of each token's pairs in features
+    private int[] featureEnds;
+    // Name code, value code pairs
+    private int[] features;
+    private int size;
+    private int featureLength;
+    private final FeatureDictionary names;
+    private final FeatureDictionary values;
+
+    public MorphLayer() {
+        this(256);
+    }
+
+    public MorphLayer(int expectedTokens) {
+        this(expectedTokens, new FeatureDictionary(), new FeatureDictionary());
+    }
+
+    /** A layer coding its features with the given dictionaries, which may be shared with other layers. */
+    public MorphLayer(int expectedTokens, FeatureDictionary names, FeatureDictionary values) {
+        this.names = names;
+        this.values = values;
+        int capacity = Math.max(expectedTokens, 16);
+        tokens = new int[capacity * FIELDS];
+        featureEnds = new int[capacity];
+        features = new int[capacity * 8];
+    }
+
+    @Override
+    public void startToken(int id, int subId, int start, int end) {
+        if (size == featureEnds.length) {
+            tokens = grow(tokens, tokens.length * 2);
+            featureEnds = grow(featureEnds, featureEnds.length * 2);
+        }
+        int base = size * FIELDS;
+        tokens[base] = id;
+        tokens[base + 1] = subId;
+        tokens[base + 2] = start;
+        tokens[base + 3] = end;
+    }
+
+    @Override
+    public void addFeature(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        if (featureLength + 2 > features.length) {
+            features = grow(features, features.length * 2);
+        }
+        features[featureLength++] = names.code(name);
+        features[featureLength++] = values.code(value);
+    }
+
+    @Override
+    public void endToken() {
+        featureEnds[size++] = featureLength;
+    }
+
+    /** Number of tokens. */
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int token) {
+        return tokens[check(token) * FIELDS + 2];
+    }
+
+    public int getEnd(int token) {
+        return tokens[check(token) * FIELDS + 3];
+    }
+
+    /** The LIF id of the token, e.g. {@code tok3} or {@code tok3_1}. */
+    public String getId(int token) {
+        int id = tokens[check(token) * FIELDS];
+        int subId = tokens[token * FIELDS + 1];
+        return subId < 0 ? "tok" + id : "tok" + id + "_" + subId;
+    }
+
+    /** Value of the named feature of a token, or {@code null} if the token does not have it. */
+    public String getFeature(int token, String name) {
+        int code = names.find(name);
+        if (code < 0) {
+            return null;
+        }
+        for (int i = featureStart(check(token)); i < featureEnds[token]; i += 2) {
+            if (features[i] == code) {
+                return values.get(features[i + 1]);
+            }
+        }
+        return null;
+    }
+
+    /** Number of distinct feature names in the layer's dictionary. */
+    public int getNameCount() {
+        return names.size();
+    }
+
+    /** Number of distinct feature values in the layer's dictionary. */
+    public int getValueCount() {
+        return values.size();
+    }
+
+    /** Copies the columns into a batch result; the feature codes refer to this layer's dictionaries. */
+    void pack(MorphBatchResult result) {
+        int[] ids = new int[size * 2];
+        int[] offsets = new int[size * 2];
+        for (int token = 0; token < size; token++) {
+            int base = token * FIELDS;
+            ids[2 * token] = tokens[base];
+            ids[2 * token + 1] = tokens[base + 1];
+            offsets[2 * token] = tokens[base + 2];
+            offsets[2 * token + 1] = tokens[base + 3];
+        }
+        int[] ends = new int[size];
+        System.arraycopy(featureEnds, 0, ends, 0, size);
+        int[] codes = new int[featureLength];
+        System.arraycopy(features, 0, codes, 0, featureLength);
+        result.setIds(ids);
+        result.setOffsets(offsets);
+        result.setFeatureEnds(ends);
+        result.setFeatures(codes);
+    }
+
+    /** Sends every token, in order, to another sink. */
+    public void replay(TokenSink sink) {
+        int next = 0;
+        for (int token = 0; token < size; token++) {
+            int base = token * FIELDS;
+            sink.startToken(tokens[base], tokens[base + 1], tokens[base + 2], tokens[base + 3]);
+            for (; next < featureEnds[token]; next += 2) {
+                sink.addFeature(names.get(features[next]), values.get(features[next + 1]));
+            }
+            sink.endToken();
+        }
+    }
+
+    /** Writes the tokens into the view the writer has open. */
+    public void writeTo(LifStreamWriter lif) {
+        replay(lif);
+    }
+
+    /** Adds the tokens to the view as {@code Annotation} objects. */
+    public void toView(View view) {
+        replay(new ViewTokenSink(view));
+    }
+
+    private int featureStart(int token) {
+        return token == 0 ? 0 : featureEnds[token - 1];
+    }
+
+    private int check(int token) {
+        if (token < 0 || token >= size) {
+            throw new IndexOutOfBoundsException("Token " + token + " of " + size);
+        }
+        return token;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
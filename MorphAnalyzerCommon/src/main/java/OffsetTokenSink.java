@@ -0,0 +1,44 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Forwards the tokens of one window of a document to the real sink, moving
+ * their offsets to the position of the window in the whole document and
+ * renumbering the token ids so they continue where the previous window
+ * stopped.
+ */
+public class OffsetTokenSink implements TokenSink {
+
+    private final TokenSink delegate;
+    private int offset;
+    private int idBase;
+    private int nextIdBase;
+
+    public OffsetTokenSink(TokenSink delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Starts a new window beginning at {@code offset} in the document. */
+    public void startWindow(int offset) {
+        this.offset = offset;
+        idBase = nextIdBase;
+    }
+
+    @Override
+    public void startToken(int id, int subId, int start, int end) {
+        int globalId = idBase + id;
+        if (globalId >= nextIdBase) {
+            nextIdBase = globalId + 1;
+        }
+        delegate.startToken(globalId, subId, offset + start, offset + end);
+    }
+
+    @Override
+    public void addFeature(String name, String value) {
+        delegate.addFeature(name, value);
+    }
+
+    @Override
+    public void endToken() {
+        delegate.endToken();
+    }
+}
@@ -0,0 +1,35 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Readiness flag of the web application: it is ready once every warm-up that
+ * has been started has finished. Consulted by {@link ReadinessFilter} and
+ * {@link ReadinessServlet} so traffic is only accepted with hot models.
+ */
+public final class Readiness {
+
+    private static final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private Readiness() {
+    }
+
+    public static void begin(String name) {
+        pending.add(name);
+    }
+
+    public static void done(String name) {
+        pending.remove(name);
+    }
+
+    public static boolean isReady() {
+        return pending.isEmpty();
+    }
+
+    /** Names of the warm-ups still running. */
+    public static Set<String> getPending() {
+        return Collections.unmodifiableSet(pending);
+    }
+}
@@ -0,0 +1,39 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Answers 503 Service Unavailable on the service endpoints while the models
+ * are still warming up.
+ */
+public class ReadinessFilter implements Filter {
+
+    private static final String RETRY_AFTER_SECONDS = "10";
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (Readiness.isReady()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletResponse http = (HttpServletResponse) response;
+        http.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        http.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Models are loading");
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
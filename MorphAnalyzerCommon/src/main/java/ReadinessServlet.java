@@ -0,0 +1,22 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/** Readiness probe for the load balancer: 200 once the models are hot, 503 before. */
+public class ReadinessServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        if (Readiness.isReady()) {
+            response.getWriter().println("ready");
+        } else {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.getWriter().println("warming up: " + String.join(", ", Readiness.getPending()));
+        }
+    }
+}
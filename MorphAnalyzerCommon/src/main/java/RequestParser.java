@@ -0,0 +1,139 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.Serializer;
+import org.lappsgrid.serialization.lif.Container;
+
+import java.util.Map;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Parses service input in one of two forms:
+ * <ul>
+ *     <li>the plain form {@code "lang; variant; text"} ({@code "lang; text"} for services
+ *     without variants). The document starts after the first separator (the second
+ *     one with a variant), so the text may itself contain {@code "; "}. A variant of {@code "null"} selects the
+ *     default model.</li>
+ *     <li>a LAPPS {@code Data} JSON object with a text or LIF payload. Language and
+ *     variant are read from the {@code language} and {@code variant} parameters,
+ *     falling back to the language of the LIF text.</li>
+ * </ul>
+ */
+public class RequestParser {
+
+    public static final String LANGUAGE = "language";
+    public static final String VARIANT = "variant";
+
+    private static final String SEPARATOR = "; ";
+
+    private final boolean hasVariant;
+
+    public RequestParser(boolean hasVariant) {
+        this.hasVariant = hasVariant;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the input is malformed or uses an unsupported
+     * discriminator
+     */
+    public AnalysisRequest parse(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("No input");
+        }
+        int first = skipWhitespace(input, 0);
+        if (first < input.length() && input.charAt(first) == '{') {
+            return parseJson(input);
+        }
+        return parsePlain(input);
+    }
+
+    private AnalysisRequest parsePlain(String input) {
+        int languageEnd = input.indexOf(SEPARATOR);
+        if (languageEnd < 0) {
+            throw new IllegalArgumentException("Expected \"language; " + (hasVariant ? "variant; " : "") + "text\"");
+        }
+        String language = input.substring(0, languageEnd).trim();
+        int textStart = languageEnd + SEPARATOR.length();
+        String variant = null;
+        if (hasVariant) {
+            int variantEnd = input.indexOf(SEPARATOR, textStart);
+            if (variantEnd < 0) {
+                throw new IllegalArgumentException("Expected \"language; variant; text\"");
+            }
+            variant = normalizeVariant(input.substring(textStart, variantEnd).trim());
+            textStart = variantEnd + SEPARATOR.length();
+        }
+        Container container = new Container();
+        container.setText(trim(input, textStart));
+        return new AnalysisRequest(language, variant, container);
+    }
+
+    private AnalysisRequest parseJson(String input) {
+        Data data;
+        try {
+            data = Serializer.parse(input, Data.class);
+        } catch (RuntimeException e) {
+            data = null;
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("Malformed JSON request");
+        }
+        String discriminator = data.getDiscriminator();
+        Object payload = data.getPayload();
+        Container container;
+        if (Uri.TEXT.equals(discriminator)) {
+            if (payload == null) {
+                throw new IllegalArgumentException("No text in the request payload");
+            }
+            container = new Container();
+            container.setText(payload.toString());
+        } else if (Uri.LAPPS.equals(discriminator) || Uri.LIF.equals(discriminator)) {
+            if (!(payload instanceof Map)) {
+                throw new IllegalArgumentException("Expected a LIF container as the request payload");
+            }
+            container = new Container((Map) payload);
+        } else {
+            throw new IllegalArgumentException(String.format("Unsupported discriminator type: %s", discriminator));
+        }
+        Map parameters = data.getParameters();
+        String language = parameter(parameters, LANGUAGE);
+        if (language == null) {
+            language = container.getLanguage();
+        }
+        if (language == null) {
+            throw new IllegalArgumentException("No language given in the request parameters or the LIF text");
+        }
+        String variant = hasVariant ? normalizeVariant(parameter(parameters, VARIANT)) : null;
+        return new AnalysisRequest(language, variant, container);
+    }
+
+    private static String parameter(Map parameters, String name) {
+        if (parameters == null) {
+            return null;
+        }
+        Object value = parameters.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    private static String normalizeVariant(String variant) {
+        return variant == null || variant.isEmpty() || variant.equals("null") ? null : variant;
+    }
+
+    // Equivalent to input.substring(start).trim() without the intermediate copy
+    private static String trim(String input, int start) {
+        int end = input.length();
+        start = skipWhitespace(input, start);
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return input.substring(start, end);
+    }
+
+    private static int skipWhitespace(String input, int start) {
+        while (start < input.length() && input.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+}
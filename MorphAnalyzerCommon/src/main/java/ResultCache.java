@@ -0,0 +1,232 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the JSON returned by {@code execute} for whole documents, so a
+ * resubmitted document is answered without a CAS or an engine.
+ *
+ * Entries are keyed by a SHA-256 over everything that determines the output
+ * (see {@link #key}) and held gzip-compressed in a {@link BoundedCache}. With a
+ * directory configured every entry is also written there as
+ * {@code <key>.json.gz} and found again after a restart; the directory is not
+ * pruned, so it should be on disposable storage or cleaned externally.
+ *
+ * Settings are read from {@code <prefix>.resultCache.size} (entries kept in
+ * memory, 0 disables the cache), {@code <prefix>.resultCache.maxEntryBytes}
+ * (larger compressed results are not cached) and
+ * {@code <prefix>.resultCache.dir}.
+ */
+public class ResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultCache.class);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BoundedCache<String, byte[]> memory;
+    private final int maxEntryBytes;
+    private final Path directory;
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public ResultCache(int maxEntries, int maxEntryBytes, Path directory) {
+        this.memory = new BoundedCache<>(maxEntries);
+        this.maxEntryBytes = maxEntryBytes;
+        this.directory = directory;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create result cache directory " + directory, e);
+            }
+        }
+    }
+
+    /** The cache configured for {@code prefix}, or {@code null} if it is disabled (the default). */
+    public static ResultCache fromSystemProperties(String prefix) {
+        int size = Integer.getInteger(prefix + ".resultCache.size", 0);
+        if (size <= 0) {
+            return null;
+        }
+        int maxEntryBytes = Integer.getInteger(prefix + ".resultCache.maxEntryBytes", 1024 * 1024);
+        String dir = System.getProperty(prefix + ".resultCache.dir");
+        return new ResultCache(size, maxEntryBytes, dir == null || dir.isEmpty() ? null : Paths.get(dir));
+    }
+
+    /**
+     * Hex SHA-256 of the parts. Each part is length-prefixed, so no two different
+     * part lists hash the same input; {@code null} parts are allowed.
+     */
+    public static String key(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (String part : parts) {
+            byte[] bytes = part == null ? new byte[0] : part.getBytes(StandardCharsets.UTF_8);
+            int length = part == null ? -1 : bytes.length;
+            digest.update(new byte[] {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8),
+                    (byte) length});
+            digest.update(bytes);
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /** The cached JSON for {@code key}, or {@code null}. Disk hits are promoted to memory. */
+    public String get(String key) {
+        byte[] compressed = memory.get(key);
+        if (compressed == null && directory != null) {
+            compressed = read(key);
+            if (compressed != null) {
+                diskHits.increment();
+                memory.put(key, compressed);
+            }
+        }
+        if (compressed == null) {
+            return null;
+        }
+        try {
+            return new String(gunzip(compressed), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Dropping corrupt result cache entry {}", key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    public void put(String key, String json) {
+        byte[] compressed;
+        try {
+            compressed = gzip(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // In-memory streams do not throw
+            throw new IllegalStateException(e);
+        }
+        if (compressed.length > maxEntryBytes) {
+            skipped.increment();
+            return;
+        }
+        memory.put(key, compressed);
+        if (directory != null) {
+            write(key, compressed);
+        }
+    }
+
+    public BoundedCache<String, byte[]> getMemory() {
+        return memory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** Lookups missed in memory but found on disk. */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    /** Results not cached because they exceeded the entry size limit. */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public String toString() {
+        return memory + " diskHits=" + getDiskHits() + " skipped=" + getSkipped();
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".json.gz");
+    }
+
+    private byte[] read(String key) {
+        try {
+            return Files.readAllBytes(file(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Cannot read result cache entry {}", key, e);
+            return null;
+        }
+    }
+
+    // Written to a temporary file first so that readers never see a partial entry
+    private void write(String key, byte[] compressed) {
+        Path target = file(key);
+        try {
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.write(temp, compressed);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write result cache entry {}", key, e);
+        }
+    }
+
+    private void remove(String key) {
+        memory.remove(key);
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException e) {
+                log.warn("Cannot delete result cache entry {}", key, e);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,30 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.jcas.JCas;
+
+/**
+ * Sets the document text of a fresh JCas and adds the Token and Sentence
+ * annotations the analyzers work on.
+ */
+public interface Segmenter {
+
+    void segment(JCas jCas, String text);
+
+    /**
+     * Returns a segmenter for the part {@code [start, end)} of the document, to be
+     * called with just that part of the text. Segmenters that only look at the
+     * text they are given can return themselves.
+     */
+    default Segmenter window(int start, int end) {
+        return this;
+    }
+
+    /**
+     * Returns the (exclusive) end of the window of at most about {@code maxChars}
+     * characters starting at {@code start}, see {@link SentenceWindows#end}.
+     * Segmenters with their own boundaries move it so no token is cut.
+     */
+    default int windowEnd(String text, int start, int maxChars) {
+        return SentenceWindows.end(text, start, maxChars);
+    }
+}
@@ -0,0 +1,50 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Cuts a document into windows of at most a given number of characters that
+ * end on sentence boundaries, so a long document can be tagged piece by piece.
+ *
+ * A window ends after the last line break inside the limit; failing that after
+ * the last sentence-final punctuation followed by whitespace, and failing that
+ * at the last whitespace. A sentence without any whitespace longer than the
+ * limit is kept whole.
+ */
+public final class SentenceWindows {
+
+    private SentenceWindows() {
+    }
+
+    /** Returns the (exclusive) end of the window starting at {@code start}. */
+    public static int end(String text, int start, int maxChars) {
+        int length = text.length();
+        if (length - start <= maxChars) {
+            return length;
+        }
+        int limit = start + maxChars;
+        int newline = text.lastIndexOf('\n', limit - 1);
+        if (newline >= start) {
+            return newline + 1;
+        }
+        int space = -1;
+        for (int i = limit - 1; i > start; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                char previous = text.charAt(i - 1);
+                if (previous == '.' || previous == '!' || previous == '?') {
+                    return i + 1;
+                }
+                if (space < 0) {
+                    space = i + 1;
+                }
+            }
+        }
+        if (space >= 0) {
+            return space;
+        }
+        for (int i = limit; i < length; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+}
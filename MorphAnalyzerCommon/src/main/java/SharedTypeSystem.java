@@ -0,0 +1,60 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.TypeSystemDescriptionFactory;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+
+import java.util.Collections;
+
+/**
+ * The type system of every engine and CAS of the application, detected and
+ * merged once.
+ *
+ * uimaFIT's {@code createEngine(Class, Object...)} scans the classpath for
+ * type descriptors, parses them and resolves their imports again for every
+ * engine it builds. The wrappers pass {@link #get()} instead, so building an
+ * engine only has to check the description, and the CAS pools created from
+ * those engines all share it. {@link #initialize()} also creates one JCas,
+ * which loads the JCas cover classes; {@link ModelWarmUp} calls it before the
+ * first model is loaded.
+ *
+ * The description is shared and must not be modified.
+ */
+public final class SharedTypeSystem {
+
+    private static volatile TypeSystemDescription typeSystem;
+    private static volatile boolean initialized;
+
+    private SharedTypeSystem() {
+    }
+
+    public static TypeSystemDescription get() throws ResourceInitializationException {
+        TypeSystemDescription description = typeSystem;
+        if (description == null) {
+            synchronized (SharedTypeSystem.class) {
+                description = typeSystem;
+                if (description == null) {
+                    description = CasCreationUtils.mergeTypeSystems(Collections.singletonList(
+                            TypeSystemDescriptionFactory.createTypeSystemDescription()));
+                    typeSystem = description;
+                }
+            }
+        }
+        return description;
+    }
+
+    /** Resolves the type system and initializes the JCas cover classes, once. */
+    public static void initialize() throws UIMAException {
+        if (initialized) {
+            return;
+        }
+        synchronized (SharedTypeSystem.class) {
+            if (!initialized) {
+                CasCreationUtils.createCas(get(), null, null).getJCas();
+                initialized = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Stages of a request that are timed separately.
+ *
+ * Tokens are written to the output while they are read out of the JCas, so
+ * {@link #ANNOTATE} covers both building the LIF annotations and writing them;
+ * {@link #SERIALIZE} is the rest of the JSON output (envelope, copied views,
+ * flushing and the final string).
+ */
+public enum Stage {
+    PARSE("parse"),
+    ACQUIRE("acquire"),
+    POPULATE("populate"),
+    PROCESS("process"),
+    ANNOTATE("annotate"),
+    SERIALIZE("serialize");
+
+    static final Stage[] ALL = values();
+
+    private final String metricName;
+
+    Stage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
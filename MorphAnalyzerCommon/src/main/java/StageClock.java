@@ -0,0 +1,45 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Times the stages of one request. Each {@link #mark} charges the time since
+ * the previous mark to a stage; a stage can be marked several times (e.g. once
+ * per window) and is reported once with the total. Not thread-safe; one clock
+ * per request.
+ */
+public final class StageClock {
+
+    private final long[] elapsed = new long[Stage.ALL.length];
+    private int marked;
+    private long last = System.nanoTime();
+    private long tokens;
+
+    public void mark(Stage stage) {
+        long now = System.nanoTime();
+        elapsed[stage.ordinal()] += now - last;
+        marked |= 1 << stage.ordinal();
+        last = now;
+    }
+
+    public void addTokens(long count) {
+        tokens += count;
+    }
+
+    /** Wraps the segmenter so that CAS population is timed and the wait before it counts as acquisition. */
+    public Segmenter timed(Segmenter segmenter) {
+        return (jCas, text) -> {
+            mark(Stage.ACQUIRE);
+            segmenter.segment(jCas, text);
+            mark(Stage.POPULATE);
+        };
+    }
+
+    /** Reports the stage times and counts the document. */
+    public void record(MetricsRegistry registry, MetricTags tags) {
+        for (Stage stage : Stage.ALL) {
+            if ((marked & (1 << stage.ordinal())) != 0) {
+                registry.recordStage(tags, stage, elapsed[stage.ordinal()]);
+            }
+        }
+        registry.countDocument(tags, tokens);
+    }
+}
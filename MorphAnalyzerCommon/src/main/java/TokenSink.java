@@ -0,0 +1,17 @@
+package org.lappsgrid.morph_analyzer_common;
+
+/**
+ * Receives token annotations as they are read out of the JCas.
+ *
+ * Token ids are passed as numbers and rendered as {@code tok<id>} or, when
+ * {@code subId} is not negative, {@code tok<id>_<subId>}. Features with a
+ * {@code null} value are skipped.
+ */
+public interface TokenSink {
+
+    void startToken(int id, int subId, int start, int end);
+
+    void addFeature(String name, String value);
+
+    void endToken();
+}
@@ -0,0 +1,38 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.View;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Adds the tokens to a LIF {@link View} as {@link Annotation} objects, for
+ * callers that want the result as a {@code Container} rather than JSON.
+ */
+public class ViewTokenSink implements TokenSink {
+
+    private final View view;
+    private Annotation current;
+
+    public ViewTokenSink(View view) {
+        this.view = view;
+    }
+
+    @Override
+    public void startToken(int id, int subId, int start, int end) {
+        String tokenId = subId < 0 ? "tok" + id : "tok" + id + "_" + subId;
+        current = view.newAnnotation(tokenId, Uri.TOKEN, start, end);
+    }
+
+    @Override
+    public void addFeature(String name, String value) {
+        if (value != null) {
+            current.addFeature(name, value);
+        }
+    }
+
+    @Override
+    public void endToken() {
+        current = null;
+    }
+}
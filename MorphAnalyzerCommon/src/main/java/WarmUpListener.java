@@ -0,0 +1,66 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the model warm-up when the web application is deployed.
+ *
+ * Context parameters:
+ * <ul>
+ * <li>{@code warmUpService}: class name of the {@link MorphAnalyzerService};
+ * engines are held in static pools, so warming up an instance of it warms up
+ * the instance created from the Spring bean files as well</li>
+ * <li>{@code warmUpLanguages}: optional comma separated {@code language[/variant]}
+ * list; defaults to the languages declared in the service metadata</li>
+ * <li>{@code warmUp}: {@code false} disables the warm-up; the system property
+ * {@code <warmUpService>.warmUp} takes precedence</li>
+ * </ul>
+ */
+public class WarmUpListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String serviceClass = context.getInitParameter("warmUpService");
+        if (serviceClass == null) {
+            return;
+        }
+        String enabled = System.getProperty(serviceClass + ".warmUp", context.getInitParameter("warmUp"));
+        if ("false".equalsIgnoreCase(enabled)) {
+            return;
+        }
+        MorphAnalyzerService service;
+        try {
+            service = (MorphAnalyzerService) Class.forName(serviceClass, true,
+                    Thread.currentThread().getContextClassLoader()).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + serviceClass + " for warm-up", e);
+        }
+        String languages = context.getInitParameter("warmUpLanguages");
+        List<EngineKey> keys = languages == null ? service.getWarmUpKeys() : parseKeys(languages);
+        ModelWarmUp.start(service, keys);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+    }
+
+    /** Parses a comma separated {@code language[/variant]} list. */
+    public static List<EngineKey> parseKeys(String languages) {
+        List<EngineKey> keys = new ArrayList<>();
+        for (String entry : languages.split(",")) {
+            String spec = entry.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int slash = spec.indexOf('/');
+            keys.add(slash < 0 ? new EngineKey(spec, null)
+                    : new EngineKey(spec.substring(0, slash), spec.substring(slash + 1)));
+        }
+        return keys;
+    }
+}
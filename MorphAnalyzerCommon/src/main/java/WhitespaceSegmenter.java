@@ -0,0 +1,49 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.uima.jcas.JCas;
+
+/**
+ * Segments a pre-tokenized document: every line is a sentence and every
+ * whitespace-separated run of characters is a token. This is the input
+ * convention the services have always used.
+ */
+public final class WhitespaceSegmenter implements Segmenter {
+
+    public static final WhitespaceSegmenter INSTANCE = new WhitespaceSegmenter();
+
+    private WhitespaceSegmenter() {
+    }
+
+    @Override
+    public void segment(JCas jCas, String text) {
+        jCas.setDocumentText(text);
+        int length = text.length();
+        int sentenceStart = -1;
+        int tokenStart = -1;
+        int lastTokenEnd = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : '\n';
+            boolean lineEnd = c == '\n' || c == '\r';
+            if (lineEnd || Character.isWhitespace(c)) {
+                if (tokenStart >= 0) {
+                    new Token(jCas, tokenStart, i).addToIndexes();
+                    lastTokenEnd = i;
+                    tokenStart = -1;
+                }
+                if (lineEnd && sentenceStart >= 0) {
+                    new Sentence(jCas, sentenceStart, lastTokenEnd).addToIndexes();
+                    sentenceStart = -1;
+                }
+            } else {
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                }
+                if (sentenceStart < 0) {
+                    sentenceStart = i;
+                }
+            }
+        }
+    }
+}
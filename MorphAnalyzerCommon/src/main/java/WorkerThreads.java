@@ -0,0 +1,105 @@
+package org.lappsgrid.morph_analyzer_common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads requests and batch documents run on: daemon platform
+ * threads, or virtual threads when asked for and the JVM has them (Java 21+).
+ * The code is compiled for Java 8, so virtual threads are looked up
+ * reflectively; on older JVMs the platform variant is used.
+ */
+public final class WorkerThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerThreads.class);
+
+    private static final Method ofVirtual;
+    private static final Method builderName;
+    private static final Method builderFactory;
+    private static final Method newThreadPerTaskExecutor;
+
+    static {
+        Method of = null;
+        Method name = null;
+        Method factory = null;
+        Method perTask = null;
+        try {
+            of = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            of = null;
+        }
+        ofVirtual = of;
+        builderName = name;
+        builderFactory = factory;
+        newThreadPerTaskExecutor = perTask;
+    }
+
+    private WorkerThreads() {
+    }
+
+    public static boolean isVirtualSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Factory for threads named {@code <prefix>-<n>}: virtual if requested and
+     * supported, daemon platform threads otherwise.
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (virtual) {
+            ThreadFactory factory = virtualFactory(prefix);
+            if (factory != null) {
+                return factory;
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Executor for independent tasks: one new virtual thread per task if
+     * requested and supported, else a fixed pool of {@code platformThreads}.
+     */
+    public static ExecutorService newExecutor(String prefix, int platformThreads, boolean virtual) {
+        if (virtual) {
+            ThreadFactory factory = virtualFactory(prefix);
+            if (factory != null) {
+                try {
+                    return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+                } catch (ReflectiveOperationException e) {
+                    log.warn("Cannot create a virtual thread executor for {}", prefix, e);
+                }
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, factory(prefix, false));
+    }
+
+    private static ThreadFactory virtualFactory(String prefix) {
+        if (ofVirtual == null) {
+            log.warn("Virtual threads requested for {} but not available before Java 21; using platform threads",
+                    prefix);
+            return null;
+        }
+        try {
+            Object builder = builderName.invoke(ofVirtual.invoke(null), prefix + "-", 1L);
+            return (ThreadFactory) builderFactory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Cannot create virtual threads for {}", prefix, e);
+            return null;
+        }
+    }
+}
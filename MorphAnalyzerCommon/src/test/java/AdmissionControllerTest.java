@@ -0,0 +1,119 @@
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.AdmissionConfig;
+import org.lappsgrid.morph_analyzer_common.AdmissionController;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.WorkerThreads;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest
+{
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AdmissionController admission;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (admission != null) {
+            admission.close();
+        }
+    }
+
+    private String blocked() throws InterruptedException {
+        release.await();
+        return "done";
+    }
+
+    @Test
+    public void testRejectsWhenWorkersAndQueueAreFull() throws Exception {
+        admission = new AdmissionController("test",
+                new AdmissionConfig().setMaxConcurrentPerKey(1).setMaxQueuedPerKey(1));
+        EngineKey key = new EngineKey("de", null);
+        Future<String> running = admission.submit(key, this::blocked);
+        Future<String> queued = admission.submit(key, this::blocked);
+        try {
+            admission.submit(key, this::blocked);
+            fail("Expected the third request to be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        // Other keys have their own limit
+        Future<String> other = admission.submit(new EngineKey("cz", null), () -> "cz");
+        assertEquals("cz", other.get());
+
+        release.countDown();
+        assertEquals("done", running.get());
+        assertEquals("done", queued.get());
+    }
+
+    @Test
+    public void testTimeoutCancelsQueuedRequest() throws Exception {
+        admission = new AdmissionController("test",
+                new AdmissionConfig().setMaxConcurrentPerKey(1).setMaxQueuedPerKey(1).setTimeoutMillis(50));
+        EngineKey key = new EngineKey("hu", null);
+        admission.submit(key, this::blocked);
+        AtomicBoolean ran = new AtomicBoolean();
+        try {
+            admission.call(key, () -> ran.getAndSet(true));
+            fail("Expected a timeout");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertEquals("Cancelled request still queued", 0, admission.getQueued(key));
+        // The freed slot takes a new request
+        Future<String> next = admission.submit(key, () -> "next");
+        release.countDown();
+        assertEquals("next", next.get());
+        assertFalse("Cancelled request was run", ran.get());
+    }
+
+    @Test
+    public void testKeysBeyondLimitShareOneQueue() throws Exception {
+        admission = new AdmissionController("test",
+                new AdmissionConfig().setMaxConcurrentPerKey(1).setMaxQueuedPerKey(0).setMaxKeys(1));
+        admission.submit(new EngineKey("de", null), () -> "de").get();
+        admission.submit(new EngineKey("sk", null), this::blocked);
+        try {
+            admission.submit(new EngineKey("sl", null), this::blocked);
+            fail("Expected the shared queue to be full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsKeepTheSameLimits() throws Exception {
+        Assume.assumeTrue("Needs Java 21+", WorkerThreads.isVirtualSupported());
+        admission = new AdmissionController("test", new AdmissionConfig().setMaxConcurrentPerKey(1)
+                .setMaxQueuedPerKey(1).setTimeoutMillis(50).setVirtualThreads(true));
+        assertTrue(admission.isVirtual());
+        EngineKey key = new EngineKey("tr", null);
+        Future<String> running = admission.submit(key, this::blocked);
+        AtomicBoolean ran = new AtomicBoolean();
+        try {
+            admission.call(key, () -> ran.getAndSet(true));
+            fail("Expected a timeout");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        Future<String> queued = admission.submit(key, () -> "queued");
+        try {
+            admission.submit(key, this::blocked);
+            fail("Expected the lane to be full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        release.countDown();
+        assertEquals("done", running.get());
+        assertEquals("queued", queued.get());
+        assertFalse("Cancelled request was run", ran.get());
+    }
+}
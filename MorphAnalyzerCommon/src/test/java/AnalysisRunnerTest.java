@@ -0,0 +1,30 @@
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+
+public class AnalysisRunnerTest
+{
+    @Test
+    public void testMoreRunsThanPooledCases() throws Exception {
+        AnalysisRunner runner = new AnalysisRunner(1);
+        AnalysisEngine outer = createEngine(NoOpAnnotator.class);
+        AnalysisEngine inner = createEngine(NoOpAnnotator.class);
+        // The outer run still holds the only pooled CAS while the inner one runs
+        String texts = runner.run(outer, "de", "Der Arzt", outerJCas ->
+                outerJCas.getDocumentText() + "|" + run(runner, inner));
+        assertEquals("Der Arzt|Il medico", texts);
+        assertEquals("CAS was not reset", "Il medico", run(runner, inner));
+    }
+
+    private static String run(AnalysisRunner runner, AnalysisEngine engine) {
+        try {
+            return runner.run(engine, "it", "Il medico", jCas -> jCas.getDocumentText());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
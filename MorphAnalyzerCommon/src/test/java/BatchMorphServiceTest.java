@@ -0,0 +1,164 @@
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.After;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.MorphBatchResponse;
+import org.lappsgrid.morph_analyzer_common.MorphBatchResult;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.serialization.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+public class BatchMorphServiceTest
+{
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    private final EnginePool pool = new EnginePool(key -> {
+        if (key.getLanguage().equals("xx")) {
+            throw new ResourceInitializationException(new IllegalArgumentException("No model for xx"));
+        }
+        loaded.incrementAndGet();
+        return createEngine(NoOpAnnotator.class);
+    }, new EnginePoolConfig());
+
+    // Tags every token with its text and its length as "length"
+    private final MorphAnalyzerService service = new MorphAnalyzerService() {
+        private final AnalysisRunner runner = new AnalysisRunner(1);
+
+        @Override
+        public EnginePool getEnginePool() {
+            return pool;
+        }
+
+        @Override
+        protected AnalysisRunner getRunner() {
+            return runner;
+        }
+
+        @Override
+        protected String getProducerType() {
+            return "test";
+        }
+
+        @Override
+        protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+            int id = -1;
+            for (Token token : JCasUtil.select(jCas, Token.class)) {
+                sink.startToken(++id, -1, token.getBegin(), token.getEnd());
+                sink.addFeature("word", token.getCoveredText());
+                sink.addFeature("length", String.valueOf(token.getEnd() - token.getBegin()));
+                sink.endToken();
+            }
+        }
+
+        @Override
+        public List<String> getLanguages() {
+            return Arrays.asList("de");
+        }
+
+        @Override
+        public String getMetadata() {
+            return null;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testResultsArePackedInInputOrder() {
+        BatchDocument[] documents = {
+                new BatchDocument("d1", "de", null, "Er nahm es"),
+                new BatchDocument("d2", "xx", null, "Unknown language"),
+                new BatchDocument("d3", "de", null, "Und er nahm")};
+        MorphBatchResponse response = service.tagBatch(documents);
+        MorphBatchResult[] results = response.getResults();
+        assertEquals(3, results.length);
+
+        MorphBatchResult first = results[0];
+        assertEquals("d1", first.getId());
+        assertNull(first.getError());
+        assertEquals(3, first.size());
+        assertArrayEquals(new int[] {0, 2, 3, 7, 8, 10}, first.getOffsets());
+        assertArrayEquals(new int[] {0, -1, 1, -1, 2, -1}, first.getIds());
+        assertEquals("nahm", response.getFeature(first, 1, "word"));
+        assertEquals("4", response.getFeature(first, 1, "length"));
+        assertNull(response.getFeature(first, 1, "case"));
+
+        assertEquals("d2", results[1].getId());
+        assertNotNull("Unknown language should fail", results[1].getError());
+        assertEquals(0, results[1].size());
+
+        MorphBatchResult third = results[2];
+        assertEquals("d3", third.getId());
+        assertEquals("er", response.getFeature(third, 1, "word"));
+        assertEquals("nahm", response.getFeature(third, 2, "word"));
+    }
+
+    @Test
+    public void testDictionariesAreSharedByTheBatch() {
+        BatchDocument[] documents = {
+                new BatchDocument("d1", "de", null, "Er nahm es"),
+                new BatchDocument("d2", "de", null, "Er nahm es")};
+        MorphBatchResponse response = service.tagBatch(documents);
+        assertArrayEquals(new String[] {"word", "length"}, response.getNames());
+        // Er, 2, nahm, 4, es
+        assertEquals(5, response.getValues().length);
+        assertArrayEquals(response.getResults()[0].getFeatures(), response.getResults()[1].getFeatures());
+    }
+
+    @Test
+    public void testInvalidDocumentDoesNotFailTheBatch() {
+        List<BatchDocument> documents = Arrays.asList(
+                new BatchDocument("d1", "de", null, "Er nahm es"),
+                new BatchDocument("d2", null, null, "No language"),
+                new BatchDocument("d3", "de", null, null),
+                new BatchDocument("d4", "de", null, "Und er nahm"));
+        Data[] results = service.executeBatch(documents);
+        assertEquals(4, results.length);
+        assertNotEquals(Uri.ERROR, results[0].getDiscriminator());
+        assertEquals(Uri.ERROR, results[1].getDiscriminator());
+        assertEquals(Uri.ERROR, results[2].getDiscriminator());
+        assertNotEquals(Uri.ERROR, results[3].getDiscriminator());
+
+        List<String> streamed = new ArrayList<>();
+        service.executeBatch(documents.iterator(),
+                (document, result) -> streamed.add(document.getId()
+                        + (Uri.ERROR.equals(result.getDiscriminator()) ? " failed" : " tagged")));
+        assertEquals(Arrays.asList("d1 tagged", "d2 failed", "d3 failed", "d4 tagged"), streamed);
+    }
+
+    @Test
+    public void testInvalidDocumentKeepsTheEngine() {
+        BatchDocument[] documents = {
+                new BatchDocument("d1", "de", null, "Er nahm es"),
+                new BatchDocument("d2", "de", null, null),
+                new BatchDocument("d3", null, null, "No language"),
+                new BatchDocument("d4", "de", null, "Und er nahm")};
+        MorphBatchResult[] results = service.tagBatch(documents).getResults();
+        assertNull(results[0].getError());
+        assertEquals("d2", results[1].getId());
+        assertNotNull(results[1].getError());
+        assertEquals("d3", results[2].getId());
+        assertNotNull(results[2].getError());
+        assertNull(results[3].getError());
+        assertEquals("Engine was reloaded after invalid input", 1, loaded.get());
+    }
+}
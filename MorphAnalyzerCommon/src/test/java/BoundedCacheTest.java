@@ -0,0 +1,30 @@
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.BoundedCache;
+
+import static org.junit.Assert.*;
+
+public class BoundedCacheTest
+{
+    @Test
+    public void testHitsAndMisses() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100);
+        assertNull(cache.get("der"));
+        cache.put("der", "die<+ART>");
+        assertEquals("die<+ART>", cache.get("der"));
+        assertEquals("und", cache.get("und", String::new));
+        assertEquals("und", cache.get("und", w -> "unused"));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(160);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue("size " + cache.size(), cache.size() <= 160);
+        assertEquals(10000 - cache.size(), cache.getEvictions());
+    }
+}
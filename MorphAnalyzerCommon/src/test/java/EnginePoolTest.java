@@ -0,0 +1,145 @@
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EngineLease;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+
+public class EnginePoolTest
+{
+    private AtomicInteger created;
+    private EnginePool pool;
+
+    @Before
+    public void setUp() {
+        created = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private EnginePool newPool(EnginePoolConfig config) {
+        return new EnginePool(key -> {
+            created.incrementAndGet();
+            return createEngine(NoOpAnnotator.class);
+        }, config);
+    }
+
+    @Test
+    public void testEngineIsReused() throws Exception {
+        pool = newPool(new EnginePoolConfig().setMaxPerKey(2));
+        EngineKey key = new EngineKey("de", null);
+        AnalysisEngine first;
+        try (EngineLease lease = pool.lease(key)) {
+            first = lease.getEngine();
+        }
+        try (EngineLease lease = pool.lease(key)) {
+            assertSame("Idle engine was not reused", first, lease.getEngine());
+        }
+        assertEquals("Engine created more than once", 1, created.get());
+    }
+
+    @Test
+    public void testConcurrentBorrowersGetDistinctEngines() throws Exception {
+        pool = newPool(new EnginePoolConfig().setMaxPerKey(2));
+        EngineKey key = new EngineKey("de", "smor-ca");
+        try (EngineLease a = pool.lease(key); EngineLease b = pool.lease(key)) {
+            assertNotSame("Engine handed out twice", a.getEngine(), b.getEngine());
+        }
+        assertEquals(2, pool.getLoadedEngineCount(key));
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenExhausted() throws Exception {
+        pool = newPool(new EnginePoolConfig().setMaxPerKey(1).setBorrowTimeoutMillis(50));
+        EngineKey key = new EngineKey("cz", null);
+        try (EngineLease lease = pool.lease(key)) {
+            pool.borrow(key);
+            fail("Expected borrow to time out");
+        } catch (org.apache.uima.resource.ResourceInitializationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testResidentModelCapUnloadsLeastRecentlyUsed() throws Exception {
+        pool = newPool(new EnginePoolConfig().setMaxResidentModels(2));
+        EngineKey cz = new EngineKey("cz", null);
+        EngineKey de = new EngineKey("de", null);
+        EngineKey hu = new EngineKey("hu", null);
+        pool.lease(cz).close();
+        pool.lease(de).close();
+        pool.lease(hu).close();
+        assertEquals(2, pool.getResidentModels().size());
+        assertFalse("Least recently used model still resident", pool.getResidentModels().contains(cz));
+    }
+
+    @Test
+    public void testInvalidatedEngineIsNotReused() throws Exception {
+        pool = newPool(new EnginePoolConfig());
+        EngineKey key = new EngineKey("sl", null);
+        AnalysisEngine broken;
+        try (EngineLease lease = pool.lease(key)) {
+            broken = lease.getEngine();
+            lease.invalidate();
+        }
+        try (EngineLease lease = pool.lease(key)) {
+            assertNotSame(broken, lease.getEngine());
+        }
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testEngineIsRecycledAfterMaxUses() throws Exception {
+        pool = newPool(new EnginePoolConfig().setMaxUsesPerEngine(2));
+        EngineKey key = new EngineKey("ru", null);
+        AnalysisEngine first;
+        try (EngineLease lease = pool.lease(key)) {
+            first = lease.getEngine();
+        }
+        try (EngineLease lease = pool.lease(key)) {
+            assertSame(first, lease.getEngine());
+        }
+        try (EngineLease lease = pool.lease(key)) {
+            assertNotSame("Engine reused past its use limit", first, lease.getEngine());
+        }
+        assertEquals(2, created.get());
+        assertEquals(1, pool.getLoadedEngineCount(key));
+    }
+
+    @Test
+    public void testUnhealthyIdleEngineIsReplaced() throws Exception {
+        AtomicInteger failing = new AtomicInteger();
+        pool = new EnginePool(key -> {
+            created.incrementAndGet();
+            return createEngine(NoOpAnnotator.class);
+        }, new EnginePoolConfig().setValidationIntervalMillis(0), (key, engine) -> failing.get() == 0);
+        EngineKey key = new EngineKey("sk", null);
+        AnalysisEngine first;
+        try (EngineLease lease = pool.lease(key)) {
+            first = lease.getEngine();
+        }
+        pool.validateIdle();
+        assertEquals("Healthy engine was dropped", 1, pool.getLoadedEngineCount(key));
+
+        failing.set(1);
+        pool.validateIdle();
+        assertEquals("Unhealthy engine was kept", 0, pool.getLoadedEngineCount(key));
+        try (EngineLease lease = pool.lease(key)) {
+            assertNotSame(first, lease.getEngine());
+        }
+        assertEquals(2, created.get());
+    }
+}
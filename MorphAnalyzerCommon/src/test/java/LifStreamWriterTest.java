@@ -0,0 +1,75 @@
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators;
+import org.lappsgrid.morph_analyzer_common.LifStreamWriter;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.Serializer;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+import org.lappsgrid.vocabulary.Features;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LifStreamWriterTest
+{
+    private String write(Container container, boolean pretty) throws Exception {
+        StringWriter out = new StringWriter();
+        try (LifStreamWriter lif = new LifStreamWriter(out, pretty)) {
+            lif.startContainer(container);
+            lif.startView(Discriminators.Uri.TOKEN, "producer", "tagset");
+            lif.startToken(0, -1, 0, 3);
+            lif.addFeature(Features.Token.WORD, "Der");
+            lif.addFeature("case", null);
+            lif.addFeature("morph_tag", "die<+ART><Def>");
+            lif.endToken();
+            lif.startToken(12, 3, 4, 8);
+            lif.endToken();
+            lif.endView();
+            lif.endContainer();
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void testOutputParsesAsLif() throws Exception {
+        Container input = new Container();
+        input.setText("Der Arzt");
+        String json = write(input, false);
+        assertFalse("Compact output expected", json.contains("\n"));
+
+        Container container = Serializer.parse(json, DataContainer.class).getPayload();
+        assertEquals("Der Arzt", container.getText());
+        List<View> views = container.getViews();
+        assertEquals(1, views.size());
+        View view = views.get(0);
+        assertTrue(view.contains(Discriminators.Uri.TOKEN));
+
+        List<Annotation> annotations = view.getAnnotations();
+        assertEquals(2, annotations.size());
+        Annotation first = annotations.get(0);
+        assertEquals("tok0", first.getId());
+        assertEquals(0L, first.getStart().longValue());
+        assertEquals(3L, first.getEnd().longValue());
+        assertEquals("Der", first.getFeature(Features.Token.WORD));
+        assertEquals("die<+ART><Def>", first.getFeature("morph_tag"));
+        assertNull(first.getFeature("case"));
+        assertEquals("tok12_3", annotations.get(1).getId());
+    }
+
+    @Test
+    public void testExistingViewsAreKept() throws Exception {
+        Container input = new Container();
+        input.setText("Der Arzt");
+        View upstream = input.newView();
+        upstream.newAnnotation("s0", Discriminators.Uri.SENTENCE, 0, 8);
+        String json = write(input, true);
+
+        Container container = Serializer.parse(json, DataContainer.class).getPayload();
+        assertEquals(2, container.getViews().size());
+        assertEquals("s0", container.getViews().get(0).getAnnotations().get(0).getId());
+        assertNotEquals(container.getViews().get(0).getId(), container.getViews().get(1).getId());
+    }
+}
@@ -0,0 +1,55 @@
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.InMemoryMetricsRegistry;
+import org.lappsgrid.morph_analyzer_common.LatencyHistogram;
+import org.lappsgrid.morph_analyzer_common.MetricTags;
+import org.lappsgrid.morph_analyzer_common.MetricsTextFormat;
+import org.lappsgrid.morph_analyzer_common.Stage;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest
+{
+    @Test
+    public void testHistogramQuantilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        long median = histogram.getValueAtQuantile(0.5);
+        assertTrue("median " + median, median >= 500000 && median <= 500000 * 1.125);
+        long p99 = histogram.getValueAtQuantile(0.99);
+        assertTrue("p99 " + p99, p99 >= 990000 && p99 <= 1000000);
+        assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.5));
+    }
+
+    @Test
+    public void testSmallAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtQuantile(0.1));
+        assertEquals(7, histogram.getValueAtQuantile(0.6));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testTextFormat() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        MetricTags tags = new MetricTags("RfTaggerLapps", "de", null);
+        registry.recordStage(tags, Stage.PROCESS, 2000000);
+        registry.countDocument(tags, 6);
+        StringWriter out = new StringWriter();
+        MetricsTextFormat.write(registry, out);
+        String text = out.toString();
+        String labels = "wrapper=\"RfTaggerLapps\",language=\"de\",variant=\"\"";
+        assertTrue(text, text.contains("morph_stage_latency_seconds_count{" + labels + ",stage=\"process\"} 1\n"));
+        assertTrue(text, text.contains("morph_tokens_total{" + labels + "} 6\n"));
+        assertTrue(text, text.contains("morph_errors_total{" + labels + "} 0\n"));
+        assertFalse("Unused stages are not exported", text.contains("stage=\"parse\""));
+    }
+}
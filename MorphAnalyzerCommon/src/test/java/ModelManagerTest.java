@@ -0,0 +1,118 @@
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.junit.After;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.EngineHealthCheck;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EngineLease;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.ModelManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+
+public class ModelManagerTest
+{
+    private static final EngineKey CZ = new EngineKey("cz", null);
+    private static final EngineKey DE = new EngineKey("de", null);
+    private static final EngineKey FR = new EngineKey("fr", null);
+
+    // Every engine "loads" 100 bytes of heap
+    private final AtomicLong heap = new AtomicLong();
+    private final List<EnginePool> pools = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (EnginePool pool : pools) {
+            pool.close();
+        }
+    }
+
+    private ModelManager manager(long maxHeapBytes, long maxOffHeapBytes) {
+        return new ModelManager(maxHeapBytes, maxOffHeapBytes, heap::get);
+    }
+
+    private EnginePool newPool(ModelManager manager, EnginePoolConfig config) {
+        EnginePool pool = new EnginePool(key -> {
+            heap.addAndGet(100);
+            return createEngine(NoOpAnnotator.class);
+        }, config, EngineHealthCheck.NONE, manager);
+        pools.add(pool);
+        return pool;
+    }
+
+    private static void use(EnginePool pool, EngineKey key) throws Exception {
+        try (EngineLease lease = pool.lease(key)) {
+            assertNotNull(lease.getEngine());
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedModelOfAnyPoolIsEvicted() throws Exception {
+        ModelManager manager = manager(250, 0);
+        EnginePool rftagger = newPool(manager, new EnginePoolConfig().setName("rftagger"));
+        EnginePool sfst = newPool(manager, new EnginePoolConfig().setName("sfst"));
+
+        use(rftagger, CZ);
+        use(sfst, DE);
+        Thread.sleep(1);
+        use(rftagger, CZ);
+        use(sfst, FR);
+
+        assertEquals("Least recently used model still loaded", 0, sfst.getLoadedEngineCount(DE));
+        assertEquals(1, rftagger.getLoadedEngineCount(CZ));
+        assertEquals(1, sfst.getLoadedEngineCount(FR));
+        assertEquals(200, manager.getHeapBytes());
+        assertEquals(Long.valueOf(1), manager.getEvictions().get("sfst/de/"));
+        assertEquals(Long.valueOf(0), manager.getEvictions().get("rftagger/cz/"));
+        assertEquals(Long.valueOf(1), manager.getLoads().get("rftagger/cz/"));
+        assertEquals(Long.valueOf(100), manager.getResidentHeapBytes().get("sfst/fr/"));
+        assertFalse(manager.getResidentHeapBytes().containsKey("sfst/de/"));
+        assertEquals(1, manager.getLoadTimes().get("sfst/de/").getCount());
+    }
+
+    @Test
+    public void testBorrowedModelIsNotEvicted() throws Exception {
+        ModelManager manager = manager(150, 0);
+        EnginePool pool = newPool(manager, new EnginePoolConfig());
+        try (EngineLease lease = pool.lease(CZ)) {
+            use(pool, DE);
+            assertEquals(1, pool.getLoadedEngineCount(CZ));
+            assertEquals("Over budget with every other model busy", 200, manager.getHeapBytes());
+        }
+        use(pool, FR);
+        assertEquals(1, pool.getLoadedEngineCount(FR));
+        assertEquals(0, pool.getLoadedEngineCount(CZ) + pool.getLoadedEngineCount(DE));
+    }
+
+    @Test
+    public void testOffHeapBudgetMakesRoomBeforeLoading() throws Exception {
+        ModelManager manager = manager(0, 150);
+        EnginePool pool = newPool(manager, new EnginePoolConfig().setOffHeapBytesPerEngine(100));
+        use(pool, CZ);
+        assertEquals(100, manager.getOffHeapBytes());
+        use(pool, DE);
+        assertEquals(0, pool.getLoadedEngineCount(CZ));
+        assertEquals(100, manager.getOffHeapBytes());
+        assertEquals(Long.valueOf(100), manager.getResidentOffHeapBytes().get("engines/de/"));
+    }
+
+    @Test
+    public void testUnloadsAreAccountedFor() throws Exception {
+        ModelManager manager = manager(0, 0);
+        EnginePool pool = newPool(manager, new EnginePoolConfig().setMaxPerKey(2).setOffHeapBytesPerEngine(10));
+        try (EngineLease a = pool.lease(DE); EngineLease b = pool.lease(DE)) {
+            assertEquals(200, manager.getHeapBytes());
+            assertEquals(20, manager.getOffHeapBytes());
+        }
+        pool.close();
+        assertEquals(0, manager.getHeapBytes());
+        assertEquals(0, manager.getOffHeapBytes());
+        assertEquals(Long.valueOf(2), manager.getLoads().get("engines/de/"));
+        assertTrue(manager.getResidentHeapBytes().isEmpty());
+    }
+}
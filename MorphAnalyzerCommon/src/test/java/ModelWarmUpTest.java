@@ -0,0 +1,83 @@
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.ModelWarmUp;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.Readiness;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+
+public class ModelWarmUpTest
+{
+    private final CountDownLatch loading = new CountDownLatch(1);
+
+    private final EnginePool pool = new EnginePool(key -> {
+        try {
+            loading.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return createEngine(NoOpAnnotator.class);
+    }, new EnginePoolConfig());
+
+    private final MorphAnalyzerService service = new MorphAnalyzerService() {
+        private final AnalysisRunner runner = new AnalysisRunner(1);
+
+        @Override
+        public EnginePool getEnginePool() {
+            return pool;
+        }
+
+        @Override
+        protected AnalysisRunner getRunner() {
+            return runner;
+        }
+
+        @Override
+        protected String getProducerType() {
+            return "test";
+        }
+
+        @Override
+        protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+        }
+
+        @Override
+        public List<String> getLanguages() {
+            return Arrays.asList("de", "fr");
+        }
+
+        @Override
+        public String getMetadata() {
+            return null;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testNotReadyUntilEnginesAreLoaded() throws Exception {
+        Future<?> warmUp = ModelWarmUp.start(service, service.getWarmUpKeys());
+        assertFalse("Ready before the models were loaded", Readiness.isReady());
+        loading.countDown();
+        warmUp.get();
+        assertTrue(Readiness.isReady());
+        assertEquals(1, pool.getLoadedEngineCount(new EngineKey("de", null)));
+        assertEquals(1, pool.getLoadedEngineCount(new EngineKey("fr", null)));
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators;
+import org.lappsgrid.morph_analyzer_common.LifStreamWriter;
+import org.lappsgrid.morph_analyzer_common.MorphLayer;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+import org.lappsgrid.vocabulary.Features;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MorphLayerTest
+{
+    private static final String TEXT = "Der Arzt und der Arzt";
+
+    private static void tag(TokenSink sink) {
+        String[] words = TEXT.split(" ");
+        int start = 0;
+        for (int i = 0; i < words.length; i++) {
+            sink.startToken(i, i == 2 ? 1 : -1, start, start + words[i].length());
+            sink.addFeature(Features.Token.WORD, words[i]);
+            sink.addFeature("case", i == 2 ? null : "nom");
+            sink.addFeature("morph_tag", i % 2 == 0 ? "ART.Def.Nom.Sg.Masc" : "N.Reg.Nom.Sg.Masc");
+            sink.endToken();
+            start += words[i].length() + 1;
+        }
+    }
+
+    private static String write(MorphLayer layer) throws Exception {
+        Container container = new Container();
+        container.setText(TEXT);
+        StringWriter out = new StringWriter();
+        try (LifStreamWriter lif = new LifStreamWriter(out, false)) {
+            lif.startContainer(container);
+            lif.startView(Discriminators.Uri.TOKEN, "producer", "tagset");
+            if (layer == null) {
+                tag(lif);
+            } else {
+                layer.writeTo(lif);
+            }
+            lif.endView();
+            lif.endContainer();
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void testLayerWritesSameLifAsDirectStreaming() throws Exception {
+        MorphLayer layer = new MorphLayer(2);
+        tag(layer);
+        assertEquals(write(null), write(layer));
+    }
+
+    @Test
+    public void testColumnsAndDictionaries() {
+        MorphLayer layer = new MorphLayer();
+        tag(layer);
+        assertEquals(5, layer.size());
+        assertEquals(4, layer.getStart(1));
+        assertEquals(8, layer.getEnd(1));
+        assertEquals("tok1", layer.getId(1));
+        assertEquals("tok2_1", layer.getId(2));
+        assertEquals("Arzt", layer.getFeature(4, Features.Token.WORD));
+        assertEquals("nom", layer.getFeature(0, "case"));
+        assertNull(layer.getFeature(2, "case"));
+        assertNull(layer.getFeature(0, "gender"));
+        assertEquals(3, layer.getNameCount());
+        // Der, Arzt, und, der, nom and the two morph tags
+        assertEquals(7, layer.getValueCount());
+    }
+
+    @Test
+    public void testToView() {
+        MorphLayer layer = new MorphLayer();
+        tag(layer);
+        View view = new Container().newView();
+        layer.toView(view);
+        List<Annotation> annotations = view.getAnnotations();
+        assertEquals(5, annotations.size());
+        assertEquals("tok2_1", annotations.get(2).getId());
+        assertEquals(13L, annotations.get(3).getStart().longValue());
+        assertEquals("der", annotations.get(3).getFeature(Features.Token.WORD));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testTokenOutOfRange() {
+        new MorphLayer().getStart(0);
+    }
+}
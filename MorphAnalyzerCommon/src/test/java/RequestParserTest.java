@@ -0,0 +1,89 @@
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.AnalysisRequest;
+import org.lappsgrid.morph_analyzer_common.RequestParser;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.lif.Container;
+
+import static org.junit.Assert.*;
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+public class RequestParserTest
+{
+    private final RequestParser withVariant = new RequestParser(true);
+    private final RequestParser withoutVariant = new RequestParser(false);
+
+    @Test
+    public void testPlainRequest() {
+        AnalysisRequest request = withVariant.parse("de; smor-ca; Der Arzt arbeitet .");
+        assertEquals("de", request.getLanguage());
+        assertEquals("smor-ca", request.getVariant());
+        assertEquals("Der Arzt arbeitet .", request.getText());
+    }
+
+    @Test
+    public void testNullVariantAndExtraWhitespace() {
+        AnalysisRequest request = withVariant.parse("cz;  null; Vzal mi pochodeň . ");
+        assertEquals("cz", request.getLanguage());
+        assertNull(request.getVariant());
+        assertEquals("Vzal mi pochodeň .", request.getText());
+    }
+
+    @Test
+    public void testTextMayContainSeparator() {
+        AnalysisRequest request = withoutVariant.parse("fr; Il pleut; il fait froid .");
+        assertEquals("fr", request.getLanguage());
+        assertEquals("Il pleut; il fait froid .", request.getText());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingVariant() {
+        withVariant.parse("de; Der Arzt");
+    }
+
+    @Test
+    public void testTextDataRequest() {
+        Data<String> data = new Data<>(Uri.TEXT, "Der Arzt ; arbeitet .");
+        data.setParameter(RequestParser.LANGUAGE, "de");
+        data.setParameter(RequestParser.VARIANT, "zmorge-orig-ca");
+        AnalysisRequest request = withVariant.parse(data.asJson());
+        assertEquals("de", request.getLanguage());
+        assertEquals("zmorge-orig-ca", request.getVariant());
+        assertEquals("Der Arzt ; arbeitet .", request.getText());
+    }
+
+    @Test
+    public void testLifRequestUsesTextLanguage() {
+        Container container = new Container();
+        container.setText("Il medico lavora .");
+        container.setLanguage("it");
+        AnalysisRequest request = withVariant.parse(new DataContainer(container).asJson());
+        assertEquals("it", request.getLanguage());
+        assertNull(request.getVariant());
+        assertEquals("Il medico lavora .", request.getText());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedDiscriminator() {
+        withVariant.parse(new Data<>(Uri.META, "x").asJson());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedJson() {
+        withVariant.parse("{\"discriminator\": \"" + Uri.TEXT + "\", \"payload\": ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTextRequestWithoutPayload() {
+        Data<String> data = new Data<>(Uri.TEXT, null);
+        data.setParameter(RequestParser.LANGUAGE, "de");
+        withVariant.parse(data.asJson());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLifRequestWithStringPayload() {
+        Data<String> data = new Data<>(Uri.LIF, "Der Arzt arbeitet .");
+        data.setParameter(RequestParser.LANGUAGE, "de");
+        withVariant.parse(data.asJson());
+    }
+}
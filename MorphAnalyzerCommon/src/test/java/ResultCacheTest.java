@@ -0,0 +1,172 @@
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.ResultCache;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+
+public class ResultCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final EnginePool pool = new EnginePool(key -> createEngine(NoOpAnnotator.class), new EnginePoolConfig());
+
+    private final AtomicInteger tagged = new AtomicInteger();
+
+    private ResultCache cache = new ResultCache(16, 1024 * 1024, null);
+
+    private String version = "1.0.0";
+
+    private final MorphAnalyzerService service = new MorphAnalyzerService() {
+        private final AnalysisRunner runner = new AnalysisRunner(1);
+
+        @Override
+        public EnginePool getEnginePool() {
+            return pool;
+        }
+
+        @Override
+        protected AnalysisRunner getRunner() {
+            return runner;
+        }
+
+        @Override
+        protected ResultCache getResultCache() {
+            return cache;
+        }
+
+        @Override
+        protected String getServiceVersion() {
+            return version;
+        }
+
+        @Override
+        protected String getProducerType() {
+            return "test";
+        }
+
+        @Override
+        protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+            tagged.incrementAndGet();
+            int id = -1;
+            for (Token token : JCasUtil.select(jCas, Token.class)) {
+                sink.startToken(++id, -1, token.getBegin(), token.getEnd());
+                sink.addFeature("word", token.getCoveredText());
+                sink.endToken();
+            }
+        }
+
+        @Override
+        public List<String> getLanguages() {
+            return Arrays.asList("de");
+        }
+
+        @Override
+        public String getMetadata() {
+            return null;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testKeyDependsOnEveryPart() {
+        String key = ResultCache.key("de", null, "Der Arzt");
+        assertEquals(64, key.length());
+        assertEquals(key, ResultCache.key("de", null, "Der Arzt"));
+        assertNotEquals(key, ResultCache.key("de", "", "Der Arzt"));
+        assertNotEquals(key, ResultCache.key("de", null, "Der Arzt "));
+        assertNotEquals(ResultCache.key("ab", "c"), ResultCache.key("a", "bc"));
+    }
+
+    @Test
+    public void testEntriesRoundTrip() {
+        String json = "{\"text\":\"Größe ändern\"}";
+        cache.put("k", json);
+        assertEquals(json, cache.get("k"));
+        assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void testOversizedEntriesAreSkipped() {
+        cache = new ResultCache(16, 32, null);
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            json.append(i).append(',');
+        }
+        cache.put("k", json.toString());
+        assertNull(cache.get("k"));
+        assertEquals(1, cache.getSkipped());
+    }
+
+    @Test
+    public void testDiskTierSurvivesRestart() throws Exception {
+        Path dir = folder.newFolder("results").toPath();
+        new ResultCache(16, 1024 * 1024, dir).put("k", "{}");
+
+        ResultCache restarted = new ResultCache(16, 1024 * 1024, dir);
+        assertEquals("{}", restarted.get("k"));
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals("{}", restarted.get("k"));
+        assertEquals("Disk hit was not promoted to memory", 1, restarted.getDiskHits());
+    }
+
+    @Test
+    public void testRepeatedRequestSkipsTagging() {
+        String first = service.execute("de; null; Der Arzt");
+        String second = service.execute("de; null; Der Arzt");
+        assertEquals(first, second);
+        assertEquals("Cache hit was tagged again", 1, tagged.get());
+
+        service.execute("de; null; Die Ärztin");
+        assertEquals(2, tagged.get());
+    }
+
+    @Test
+    public void testWindowSizeIsPartOfTheKey() {
+        String request = "de; null; Der Arzt arbeitet . Die Ärztin auch .";
+        service.setWindowSize(20);
+        service.execute(request);
+        int windows = tagged.get();
+        service.setWindowSize(30);
+        service.execute(request);
+        assertTrue("Result of another window size was served", tagged.get() > windows);
+        int tags = tagged.get();
+        service.execute(request);
+        assertEquals(tags, tagged.get());
+    }
+
+    @Test
+    public void testNewVersionMissesTheCache() throws Exception {
+        Path dir = folder.newFolder("results").toPath();
+        cache = new ResultCache(16, 1024 * 1024, dir);
+        service.execute("de; null; Der Arzt");
+        assertEquals(1, tagged.get());
+
+        // A redeploy keeps the disk tier
+        cache = new ResultCache(16, 1024 * 1024, dir);
+        version = "1.0.1";
+        service.execute("de; null; Der Arzt");
+        assertEquals("Result of the previous release was served", 2, tagged.get());
+    }
+}
@@ -0,0 +1,82 @@
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.LifSegmenter;
+import org.lappsgrid.morph_analyzer_common.Segmenter;
+import org.lappsgrid.morph_analyzer_common.SentenceWindows;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+import static org.junit.Assert.*;
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+public class SentenceWindowsTest
+{
+    @Test
+    public void testShortTextIsOneWindow() {
+        assertEquals(9, SentenceWindows.end("Der Arzt.", 0, 100));
+    }
+
+    @Test
+    public void testWindowEndsAfterLineBreak() {
+        String text = "Der Arzt kommt.\nDie Fackel brennt.\n";
+        assertEquals(16, SentenceWindows.end(text, 0, 20));
+        assertEquals(text.length(), SentenceWindows.end(text, 16, 20));
+    }
+
+    @Test
+    public void testWindowEndsAfterSentencePunctuation() {
+        String text = "Der Arzt kommt. Die Fackel brennt hell.";
+        assertEquals(16, SentenceWindows.end(text, 0, 25));
+    }
+
+    @Test
+    public void testWindowNeverSplitsAWord() {
+        String text = "Donaudampfschifffahrtsgesellschaft kommt";
+        assertEquals(35, SentenceWindows.end(text, 0, 10));
+        int end = SentenceWindows.end("aaa bbbbbbbb", 0, 6);
+        assertEquals(4, end);
+    }
+
+    @Test
+    public void testWindowDoesNotCutUpstreamToken() {
+        String text = "Der Arzt wohnt in New York City heute .";
+        Container container = new Container();
+        container.setText(text);
+        View view = container.newView();
+        view.addContains(Uri.TOKEN, "test", "tokens");
+        int[][] tokens = {{0, 3}, {4, 8}, {9, 14}, {15, 17}, {18, 31}, {32, 37}, {38, 39}};
+        for (int i = 0; i < tokens.length; i++) {
+            view.newAnnotation("tok" + i, Uri.TOKEN, tokens[i][0], tokens[i][1]);
+        }
+        Segmenter segmenter = LifSegmenter.forContainer(container);
+
+        assertEquals("Cut inside \"New York City\"", 22, SentenceWindows.end(text, 0, 24));
+        assertEquals(18, segmenter.windowEnd(text, 0, 24));
+        assertEquals("Token starting the window is kept whole", 31, segmenter.windowEnd(text, 18, 5));
+        assertEquals(text.length(), segmenter.windowEnd(text, 31, 24));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenPastTheTextIsRejected() {
+        Container container = new Container();
+        container.setText("Der Arzt");
+        View view = container.newView();
+        view.addContains(Uri.TOKEN, "test", "tokens");
+        view.newAnnotation("tok0", Uri.TOKEN, 0, 3);
+        view.newAnnotation("tok1", Uri.TOKEN, 4, 12);
+        LifSegmenter.forContainer(container);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenWithoutOffsetsIsRejected() {
+        Container container = new Container();
+        container.setText("Der Arzt");
+        View view = container.newView();
+        view.addContains(Uri.TOKEN, "test", "tokens");
+        Annotation token = new Annotation();
+        token.setId("tok0");
+        token.setAtType(Uri.TOKEN);
+        view.addAnnotation(token);
+        LifSegmenter.forContainer(container);
+    }
+}
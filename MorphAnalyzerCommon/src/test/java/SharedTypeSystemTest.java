@@ -0,0 +1,33 @@
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.component.NoOpAnnotator;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+import org.lappsgrid.morph_analyzer_common.SharedTypeSystem;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.*;
+
+public class SharedTypeSystemTest
+{
+    @Test
+    public void testResolvedOnce() throws Exception {
+        assertSame(SharedTypeSystem.get(), SharedTypeSystem.get());
+        assertNotNull("DKPro types not detected", SharedTypeSystem.get().getType(Token.class.getName()));
+    }
+
+    @Test
+    public void testEnginesBuiltFromItTagTokens() throws Exception {
+        SharedTypeSystem.initialize();
+        AnalysisEngine engine = createEngine(NoOpAnnotator.class, SharedTypeSystem.get());
+        try {
+            JCas jCas = engine.newJCas();
+            jCas.setDocumentText("Der Arzt");
+            new Token(jCas, 0, 3).addToIndexes();
+            engine.process(jCas);
+            assertEquals(1, jCas.getAnnotationIndex(Token.type).size());
+        } finally {
+            engine.destroy();
+        }
+    }
+}
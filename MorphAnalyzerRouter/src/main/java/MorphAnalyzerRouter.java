@@ -0,0 +1,265 @@
+package org.lappsgrid.morph_analyzer_router;
+
+import org.lappsgrid.api.ProcessingService;
+import org.lappsgrid.mate_tools_lapps.MateMorphTaggerLapps;
+import org.lappsgrid.metadata.IOSpecification;
+import org.lappsgrid.metadata.ServiceMetadata;
+import org.lappsgrid.morph_analyzer_common.AnalysisRequest;
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.morph_analyzer_common.BatchMorphService;
+import org.lappsgrid.morph_analyzer_common.FeatureDictionary;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.MorphBatchResponse;
+import org.lappsgrid.morph_analyzer_common.MorphBatchResult;
+import org.lappsgrid.morph_analyzer_common.RequestParser;
+import org.lappsgrid.rftagger_lapps.RfTaggerLapps;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.sfst_annotator_lapps.SfstAnnotatorLapps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.lappsgrid.discriminator.Discriminators.Uri;
+
+/**
+ * Hosts the Mate, RFTagger and SFST wrappers in one web application and hands
+ * each request to the wrapper configured for its language. The wrappers share
+ * one JVM, so UIMA, the DKPro type system and the LAPPS serialization stack
+ * are loaded once instead of once per war.
+ *
+ * Requests use the {@code "lang; variant; text"} form (or a LAPPS {@code Data}
+ * object with {@code language} and {@code variant} parameters) for every
+ * language; the variant is dropped for Mate, which has none. By default es and
+ * fr go to Mate, cz, hu, ru, sk and sl to RFTagger, it and tr to SFST and de to
+ * RFTagger; {@code -Drouter.route.<language>=matetools|rftagger|sfst} changes
+ * or adds a route.
+ *
+ * A wrapper is only instantiated when a request for one of its languages
+ * arrives, and its models are loaded by its engine pool on first use, so
+ * languages nobody asks for cost no memory.
+ */
+public class MorphAnalyzerRouter implements ProcessingService, BatchMorphService {
+
+    public static final String MATETOOLS = "matetools";
+    public static final String RFTAGGER = "rftagger";
+    public static final String SFST = "sfst";
+
+    public static final String ROUTE_PREFIX = "router.route.";
+
+    private static final String[][] DEFAULT_ROUTES = {
+            {"es", MATETOOLS}, {"fr", MATETOOLS},
+            {"cz", RFTAGGER}, {"hu", RFTAGGER}, {"ru", RFTAGGER}, {"sk", RFTAGGER}, {"sl", RFTAGGER},
+            {"it", SFST}, {"tr", SFST},
+            {"de", RFTAGGER}};
+
+    private final Map<String, Callable<? extends MorphAnalyzerService>> factories;
+    private final Map<String, String> routes;
+    private final ConcurrentMap<String, MorphAnalyzerService> analyzers = new ConcurrentHashMap<>();
+    private final RequestParser requestParser = new RequestParser(true);
+    private final String metadata;
+
+    public MorphAnalyzerRouter() {
+        this(defaultFactories(), routesFromSystemProperties());
+    }
+
+    /**
+     * @param factories creates the wrapper of each analyzer name on first use
+     * @param routes analyzer name per language
+     */
+    public MorphAnalyzerRouter(Map<String, Callable<? extends MorphAnalyzerService>> factories,
+            Map<String, String> routes) {
+        for (Map.Entry<String, String> route : routes.entrySet()) {
+            if (!factories.containsKey(route.getValue())) {
+                throw new IllegalArgumentException("Unknown analyzer " + route.getValue() + " for language "
+                        + route.getKey());
+            }
+        }
+        this.factories = factories;
+        this.routes = Collections.unmodifiableMap(new TreeMap<>(routes));
+        this.metadata = generateMetadata();
+    }
+
+    public static Map<String, Callable<? extends MorphAnalyzerService>> defaultFactories() {
+        Map<String, Callable<? extends MorphAnalyzerService>> factories = new LinkedHashMap<>();
+        factories.put(MATETOOLS, MateMorphTaggerLapps::new);
+        factories.put(RFTAGGER, RfTaggerLapps::new);
+        factories.put(SFST, SfstAnnotatorLapps::new);
+        return factories;
+    }
+
+    /** The default routes, overridden and extended by {@code router.route.<language>} properties. */
+    public static Map<String, String> routesFromSystemProperties() {
+        Map<String, String> routes = new LinkedHashMap<>();
+        for (String[] route : DEFAULT_ROUTES) {
+            routes.put(route[0], route[1]);
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(ROUTE_PREFIX)) {
+                routes.put(name.substring(ROUTE_PREFIX.length()), System.getProperty(name).trim());
+            }
+        }
+        return routes;
+    }
+
+    /** Analyzer name per language. */
+    public Map<String, String> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * The wrapper serving the language, created on first use.
+     *
+     * @throws IllegalArgumentException if no analyzer is configured for the language
+     */
+    public MorphAnalyzerService getAnalyzer(String language) {
+        String name = language == null ? null : routes.get(language);
+        if (name == null) {
+            throw new IllegalArgumentException("Unsupported language: " + language);
+        }
+        return analyzers.computeIfAbsent(name, n -> {
+            try {
+                return factories.get(n).call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot create the " + n + " analyzer", e);
+            }
+        });
+    }
+
+    /**
+     * Shuts down every wrapper created so far, with its engine pool, workers and
+     * external processes. The bean's destroy method, called when the web
+     * application is undeployed.
+     */
+    public void shutdown() {
+        for (MorphAnalyzerService analyzer : analyzers.values()) {
+            analyzer.shutdown();
+        }
+        analyzers.clear();
+    }
+
+    /** Whether requests for the language go to Mate, which takes no variant. */
+    private boolean dropsVariant(String language) {
+        return MATETOOLS.equals(routes.get(language));
+    }
+
+    @Override
+    public String execute(String input) {
+        AnalysisRequest request;
+        MorphAnalyzerService analyzer;
+        try {
+            request = requestParser.parse(input);
+            analyzer = getAnalyzer(request.getLanguage());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return new Data<String>(Uri.ERROR, e.getMessage()).asJson();
+        }
+        if (dropsVariant(request.getLanguage()) && request.getVariant() != null) {
+            request = new AnalysisRequest(request.getLanguage(), null, request.getContainer());
+        }
+        return analyzer.execute(request);
+    }
+
+    /**
+     * Splits the batch by analyzer, tags each part with its wrapper and merges
+     * the results back into input order under one pair of dictionaries.
+     */
+    @Override
+    public MorphBatchResponse tagBatch(BatchDocument[] documents) {
+        MorphBatchResult[] results = new MorphBatchResult[documents.length];
+        Map<MorphAnalyzerService, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < documents.length; i++) {
+            BatchDocument document = documents[i];
+            try {
+                groups.computeIfAbsent(getAnalyzer(document.getLanguage()), a -> new ArrayList<>()).add(i);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                results[i] = new MorphBatchResult(document.getId());
+                results[i].setError(e.getMessage());
+            }
+        }
+        if (groups.size() == 1 && groups.values().iterator().next().size() == documents.length) {
+            Map.Entry<MorphAnalyzerService, List<Integer>> only = groups.entrySet().iterator().next();
+            return only.getKey().tagBatch(forAnalyzer(documents, only.getValue()));
+        }
+        FeatureDictionary names = new FeatureDictionary();
+        FeatureDictionary values = new FeatureDictionary();
+        for (Map.Entry<MorphAnalyzerService, List<Integer>> group : groups.entrySet()) {
+            MorphBatchResponse part = group.getKey().tagBatch(forAnalyzer(documents, group.getValue()));
+            int[] nameCodes = recode(part.getNames(), names);
+            int[] valueCodes = recode(part.getValues(), values);
+            for (int j = 0; j < group.getValue().size(); j++) {
+                MorphBatchResult result = part.getResults()[j];
+                int[] features = result.getFeatures();
+                for (int f = 0; f < features.length; f += 2) {
+                    features[f] = nameCodes[features[f]];
+                    features[f + 1] = valueCodes[features[f + 1]];
+                }
+                results[group.getValue().get(j)] = result;
+            }
+        }
+        return new MorphBatchResponse(names.toArray(), values.toArray(), results);
+    }
+
+    // The documents at the given indexes, without variants where the analyzer takes none
+    private BatchDocument[] forAnalyzer(BatchDocument[] documents, List<Integer> indexes) {
+        BatchDocument[] part = new BatchDocument[indexes.size()];
+        for (int j = 0; j < part.length; j++) {
+            BatchDocument document = documents[indexes.get(j)];
+            part[j] = dropsVariant(document.getLanguage()) && document.getVariant() != null
+                    ? new BatchDocument(document.getId(), document.getLanguage(), null, document.getText())
+                    : document;
+        }
+        return part;
+    }
+
+    // Codes in the merged dictionary of each entry of a part's dictionary
+    private static int[] recode(String[] entries, FeatureDictionary merged) {
+        int[] codes = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            codes[i] = merged.code(entries[i]);
+        }
+        return codes;
+    }
+
+    private String generateMetadata() {
+        ServiceMetadata metadata = new ServiceMetadata();
+
+        metadata.setName(this.getClass().getName());
+        metadata.setDescription("Morphological Analyzer Router (LAPPS)");
+        metadata.setVersion("1.0.0-SNAPSHOT");
+        metadata.setVendor("http://www.lappsgrid.org");
+        metadata.setLicense(Uri.APACHE2);
+
+        IOSpecification requires = new IOSpecification();
+        requires.addFormat(Uri.TEXT);
+        requires.addFormat(Uri.LIF);
+        for (String language : routes.keySet()) {
+            requires.addLanguage(language);
+        }
+        requires.setEncoding("UTF-8");
+
+        IOSpecification produces = new IOSpecification();
+        produces.addFormat(Uri.LAPPS);
+        produces.addAnnotation(Uri.TOKEN);
+        for (String language : routes.keySet()) {
+            produces.addLanguage(language);
+        }
+        produces.setEncoding("UTF-8");
+
+        metadata.setRequires(requires);
+        metadata.setProduces(produces);
+
+        Data<ServiceMetadata> data = new Data<>(Uri.META, metadata);
+        return data.asPrettyJson();
+    }
+
+    @Override
+    public String getMetadata() {
+        return metadata;
+    }
+}
@@ -0,0 +1,64 @@
+package org.lappsgrid.morph_analyzer_router;
+
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.ModelWarmUp;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.WarmUpListener;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the models of the frequently used languages of the router when the web
+ * application is deployed; every other language is loaded by its first request.
+ *
+ * Context parameter {@code warmUpLanguages}: comma separated
+ * {@code language[/variant]} list, empty by default. The system property
+ * {@code router.warmUpLanguages} takes precedence. Each language is warmed up
+ * by the wrapper it is routed to; the wrappers keep their engines in static
+ * pools, so the router instance created from the Spring bean file sees them.
+ */
+public class RouterWarmUpListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        String languages = System.getProperty("router.warmUpLanguages",
+                event.getServletContext().getInitParameter("warmUpLanguages"));
+        if (languages == null) {
+            return;
+        }
+        MorphAnalyzerRouter router = new MorphAnalyzerRouter();
+        Map<MorphAnalyzerService, List<EngineKey>> keys = new LinkedHashMap<>();
+        for (EngineKey key : WarmUpListener.parseKeys(languages)) {
+            MorphAnalyzerService analyzer = router.getAnalyzer(key.getLanguage());
+            keys.computeIfAbsent(analyzer, a -> new ArrayList<>()).add(warmUpKey(router, analyzer, key));
+        }
+        for (Map.Entry<MorphAnalyzerService, List<EngineKey>> entry : keys.entrySet()) {
+            ModelWarmUp.start(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Mate takes no variant; without a variant the wrapper's usual model for the language is loaded
+    private static EngineKey warmUpKey(MorphAnalyzerRouter router, MorphAnalyzerService analyzer, EngineKey key) {
+        if (MorphAnalyzerRouter.MATETOOLS.equals(router.getRoutes().get(key.getLanguage()))) {
+            return new EngineKey(key.getLanguage(), null);
+        }
+        if (key.getVariant() != null) {
+            return key;
+        }
+        for (EngineKey usual : analyzer.getWarmUpKeys()) {
+            if (usual.getLanguage().equals(key.getLanguage())) {
+                return usual;
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+    }
+}
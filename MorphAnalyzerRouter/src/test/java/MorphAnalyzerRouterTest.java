@@ -0,0 +1,177 @@
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators;
+import org.lappsgrid.morph_analyzer_common.AnalysisRequest;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.MorphBatchResponse;
+import org.lappsgrid.morph_analyzer_common.MorphBatchResult;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.morph_analyzer_router.MorphAnalyzerRouter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+
+public class MorphAnalyzerRouterTest
+{
+    // Answers with its name and the request; batches get one "analyzer" feature per document
+    private static class FakeAnalyzer extends MorphAnalyzerService {
+        final String name;
+        final List<String> requests = new ArrayList<>();
+        boolean shutDown;
+
+        FakeAnalyzer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String execute(AnalysisRequest request) {
+            String summary = name + ":" + request.getLanguage() + ":" + request.getVariant() + ":" + request.getText();
+            requests.add(summary);
+            return summary;
+        }
+
+        @Override
+        public MorphBatchResponse tagBatch(BatchDocument[] documents) {
+            MorphBatchResult[] results = new MorphBatchResult[documents.length];
+            for (int i = 0; i < documents.length; i++) {
+                requests.add(name + ":" + documents[i].getLanguage() + ":" + documents[i].getVariant());
+                results[i] = new MorphBatchResult(documents[i].getId());
+                results[i].setFeatureEnds(new int[] {4});
+                results[i].setFeatures(new int[] {1, 1, 0, 0});
+            }
+            return new MorphBatchResponse(new String[] {"word", "analyzer"}, new String[] {"x", name}, results);
+        }
+
+        @Override
+        public void shutdown() {
+            shutDown = true;
+        }
+
+        @Override
+        public EnginePool getEnginePool() {
+            return null;
+        }
+
+        @Override
+        protected AnalysisRunner getRunner() {
+            return null;
+        }
+
+        @Override
+        protected String getProducerType() {
+            return name;
+        }
+
+        @Override
+        protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+        }
+
+        @Override
+        public List<String> getLanguages() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String getMetadata() {
+            return null;
+        }
+    }
+
+    private final Map<String, FakeAnalyzer> created = new LinkedHashMap<>();
+
+    private MorphAnalyzerRouter router(Map<String, String> routes) {
+        Map<String, Callable<? extends MorphAnalyzerService>> factories = new LinkedHashMap<>();
+        for (String name : new String[] {MorphAnalyzerRouter.MATETOOLS, MorphAnalyzerRouter.RFTAGGER,
+                MorphAnalyzerRouter.SFST}) {
+            factories.put(name, () -> {
+                FakeAnalyzer analyzer = new FakeAnalyzer(name);
+                created.put(name, analyzer);
+                return analyzer;
+            });
+        }
+        return new MorphAnalyzerRouter(factories, routes);
+    }
+
+    @Test
+    public void testDefaultRoutes() {
+        Map<String, String> routes = MorphAnalyzerRouter.routesFromSystemProperties();
+        assertEquals(MorphAnalyzerRouter.MATETOOLS, routes.get("fr"));
+        assertEquals(MorphAnalyzerRouter.RFTAGGER, routes.get("cz"));
+        assertEquals(MorphAnalyzerRouter.SFST, routes.get("tr"));
+        assertNotNull("No route for German", routes.get("de"));
+    }
+
+    @Test
+    public void testRequestsGoToTheirAnalyzerOnly() {
+        MorphAnalyzerRouter router = router(MorphAnalyzerRouter.routesFromSystemProperties());
+        assertTrue("Analyzers created before use", created.isEmpty());
+
+        assertEquals("sfst:tr:trmorph-ca:Ev .", router.execute("tr; trmorph-ca; Ev ."));
+        assertEquals("Mate takes no variant", "matetools:fr:null:Il pleut .", router.execute("fr; null; Il pleut ."));
+        assertEquals("matetools:es:null:Llueve .", router.execute("es; default; Llueve ."));
+        assertFalse("RFTagger loaded without a request", created.containsKey(MorphAnalyzerRouter.RFTAGGER));
+        assertEquals(2, created.get(MorphAnalyzerRouter.MATETOOLS).requests.size());
+    }
+
+    @Test
+    public void testGermanRouteIsConfigurable() {
+        Map<String, String> routes = MorphAnalyzerRouter.routesFromSystemProperties();
+        routes.put("de", MorphAnalyzerRouter.SFST);
+        assertEquals("sfst:de:smor-ca:Der Arzt", router(routes).execute("de; smor-ca; Der Arzt"));
+    }
+
+    @Test
+    public void testUnknownLanguageIsAnError() {
+        String json = router(MorphAnalyzerRouter.routesFromSystemProperties()).execute("xx; null; text");
+        assertTrue(json.contains(Discriminators.Uri.ERROR));
+        assertTrue(json.contains("xx"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteToUnknownAnalyzerIsRejected() {
+        Map<String, String> routes = new LinkedHashMap<>();
+        routes.put("de", "treetagger");
+        router(routes);
+    }
+
+    @Test
+    public void testMixedBatchIsMergedInInputOrder() {
+        MorphAnalyzerRouter router = router(MorphAnalyzerRouter.routesFromSystemProperties());
+        MorphBatchResponse response = router.tagBatch(new BatchDocument[] {
+                new BatchDocument("a", "cz", null, "Vzal ."),
+                new BatchDocument("b", "fr", "ftb", "Il pleut ."),
+                new BatchDocument("c", "xx", null, "?"),
+                new BatchDocument("d", "sl", null, "Vzel .")});
+
+        MorphBatchResult[] results = response.getResults();
+        assertEquals(4, results.length);
+        assertEquals("a", results[0].getId());
+        assertEquals(MorphAnalyzerRouter.RFTAGGER, response.getFeature(results[0], 0, "analyzer"));
+        assertEquals(MorphAnalyzerRouter.MATETOOLS, response.getFeature(results[1], 0, "analyzer"));
+        assertEquals("x", response.getFeature(results[1], 0, "word"));
+        assertNotNull(results[2].getError());
+        assertEquals(MorphAnalyzerRouter.RFTAGGER, response.getFeature(results[3], 0, "analyzer"));
+        assertEquals(2, response.getNames().length);
+        assertEquals("[matetools:fr:null]", created.get(MorphAnalyzerRouter.MATETOOLS).requests.toString());
+    }
+
+    @Test
+    public void testShutdownReachesCreatedAnalyzers() {
+        MorphAnalyzerRouter router = router(MorphAnalyzerRouter.routesFromSystemProperties());
+        router.execute("fr; null; Il pleut .");
+        router.execute("tr; trmorph-ca; Ev .");
+        router.shutdown();
+        assertTrue(created.get(MorphAnalyzerRouter.MATETOOLS).shutDown);
+        assertTrue(created.get(MorphAnalyzerRouter.SFST).shutDown);
+        assertFalse("RFTagger created by the shutdown", created.containsKey(MorphAnalyzerRouter.RFTAGGER));
+    }
+}
@@ -3,7 +3,6 @@ package org.lappsgrid.rftagger_lapps;
 import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.morph.MorphologicalFeatures;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.dkpro.core.rftagger.RfTagger;
-import de.tudarmstadt.ukp.dkpro.core.testing.TestRunner;
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.cas.CASException;
@@ -12,17 +11,29 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.metadata.IOSpecification;
+import org.lappsgrid.morph_analyzer_common.AdmissionConfig;
+import org.lappsgrid.morph_analyzer_common.AdmissionController;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.BatchMorphService;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.ResultCache;
+import org.lappsgrid.morph_analyzer_common.SharedTypeSystem;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.morph_analyzer_common.WorkerThreads;
 import org.lappsgrid.metadata.ServiceMetadata;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.ExecutorService;
 
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
 import static org.lappsgrid.discriminator.Discriminators.Uri;
@@ -30,7 +41,7 @@ import static org.lappsgrid.discriminator.Discriminators.Uri;
 // import org.junit.Assume.*;
 // additional API for metadata
 
-public class RfTaggerLapps implements ProcessingService {
+public class RfTaggerLapps extends MorphAnalyzerService implements ProcessingService, BatchMorphService {
 
     private String metadata;
 
@@ -40,12 +51,118 @@ public class RfTaggerLapps implements ProcessingService {
 
     private static String aLanguage;
 
-    public JCas createJcas(String language, String variant, String document) throws ResourceInitializationException, UIMAException {
-        AnalysisEngine rft = createEngine(RfTagger.class, RfTagger.PARAM_VARIANT, variant,
+    private static final String[] LANGUAGES = {"cz", "de", "hu", "ru", "sk", "sl"};
+
+    // Loading an RFTagger model takes seconds, so initialized engines are kept per (language, variant).
+    // Each engine drives its own rft-annotate process; idle ones are probed and replaced if the
+    // process stops answering, and -Drftagger.pool.maxUsesPerEngine recycles them periodically.
+    private static final EnginePool engines = new EnginePool(RfTaggerLapps::createRfTagger,
+            EnginePoolConfig.fromSystemProperties("rftagger.pool"), RfTaggerLapps::isHealthy);
+
+    public static AnalysisEngine createRfTagger(EngineKey key) throws ResourceInitializationException {
+        return createEngine(RfTagger.class, SharedTypeSystem.get(),
+                RfTagger.PARAM_LANGUAGE, key.getLanguage(),
+                RfTagger.PARAM_VARIANT, key.getVariant(),
                 RfTagger.PARAM_PRINT_TAGSET, true);
-        JCas newJcas = TestRunner.runTest(rft, language, document);
-        // RfTagger.getLogger();
-        return newJcas;
+    }
+
+    // Tags a single-token document; a crashed tagger either throws or leaves the token without a tag
+    static boolean isHealthy(EngineKey key, AnalysisEngine engine) throws UIMAException {
+        return runner.run(engine, key.getLanguage(), ".", jCas -> {
+            Token token = JCasUtil.selectSingle(jCas, Token.class);
+            return token.getPos() != null && token.getMorph() != null;
+        });
+    }
+
+    private static final AnalysisRunner runner = AnalysisRunner.fromSystemProperties("rftagger");
+
+    // rft-annotate is an external process, so requests mostly wait on its I/O; with Java 21+ they
+    // can run on virtual threads instead of a sized pool
+    private static final boolean virtualThreads = Boolean.getBoolean("rftagger.virtualThreads");
+
+    // Bounds concurrent and queued requests per (language, variant); overload is rejected at once
+    private static final AdmissionController admission = new AdmissionController("rftagger",
+            AdmissionConfig.fromSystemProperties("rftagger.admission").setVirtualThreads(virtualThreads));
+
+    // Resubmitted documents are answered from here; off unless rftagger.resultCache.size is set
+    private static final ResultCache resultCache = ResultCache.fromSystemProperties("rftagger");
+
+    // Threads for executeParallel; each document borrows its own engine
+    private static final int parallelWorkers = Integer.getInteger("rftagger.parallel.workers",
+            Runtime.getRuntime().availableProcessors());
+
+    private static volatile ExecutorService workers;
+
+    private static ExecutorService getWorkers() {
+        if (workers == null) {
+            synchronized (RfTaggerLapps.class) {
+                if (workers == null) {
+                    workers = WorkerThreads.newExecutor("rftagger-worker", parallelWorkers, virtualThreads);
+                }
+            }
+        }
+        return workers;
+    }
+
+    private static void shutdownEngines() {
+        synchronized (RfTaggerLapps.class) {
+            if (workers != null) {
+                workers.shutdownNow();
+                workers = null;
+            }
+        }
+        admission.close();
+        engines.close();
+    }
+
+    /**
+     * Stops the batch workers and destroys all pooled RFTagger engines with their
+     * external processes. The pool is shared by every instance and cannot be
+     * reopened, so this is the bean's destroy method, called once when the web
+     * application is undeployed.
+     */
+    @Override
+    public void shutdown() {
+        shutdownEngines();
+    }
+
+    @Override
+    public List<String> getLanguages() {
+        return Arrays.asList(LANGUAGES);
+    }
+
+    @Override
+    public EnginePool getEnginePool() {
+        return engines;
+    }
+
+    @Override
+    protected AnalysisRunner getRunner() {
+        return runner;
+    }
+
+    @Override
+    protected AdmissionController getAdmission() {
+        return admission;
+    }
+
+    @Override
+    protected ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Batch documents run on {@code rftagger.parallel.workers} threads, or each on its own virtual
+     * thread with {@code rftagger.virtualThreads}.
+     */
+    @Override
+    protected ExecutorService getBatchWorkers() {
+        return getWorkers();
+    }
+
+    @Override
+    protected String getProducerType() {
+        return "RfTagger";
     }
 
     public static AnalysisEngine getAnalysisEngine() {
@@ -57,9 +174,37 @@ public class RfTaggerLapps implements ProcessingService {
         jCas.setDocumentText(aText);
     }
 
-    private void setNonNullFeature(Annotation a, String featureName, String featureValue){
-        if(featureValue != null){
-            a.addFeature(featureName, featureValue);
+    @Override
+    protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+        int id = -1;
+        for (Token tok : JCasUtil.select(jCas, Token.class)) {
+            int start = tok.getBegin();
+            int end = tok.getEnd();
+            sink.startToken(++id, -1, start, end);
+            String word = text.substring(start, end);
+            sink.addFeature(Features.Token.WORD, word);
+            sink.addFeature(Features.Token.LEMMA, tok.getLemmaValue());
+            sink.addFeature(Features.Token.POS, tok.getPosValue());
+            sink.addFeature("pos_mapped", tok.getPos().getType().getShortName());
+            MorphologicalFeatures morphFeatures = tok.getMorph();
+            sink.addFeature("animacy", morphFeatures.getAnimacy());
+            sink.addFeature("aspect", morphFeatures.getAspect());
+            sink.addFeature("case", morphFeatures.getCase());
+            sink.addFeature("definiteness", morphFeatures.getDefiniteness());
+            sink.addFeature("degree", morphFeatures.getDegree());
+            sink.addFeature("gender", morphFeatures.getGender());
+            sink.addFeature("mood", morphFeatures.getMood());
+            sink.addFeature("number", morphFeatures.getNumber());
+            sink.addFeature("num_type", morphFeatures.getNumType());
+            sink.addFeature("person", morphFeatures.getPerson());
+            sink.addFeature("pron_type", morphFeatures.getPronType());
+            sink.addFeature("possessive", morphFeatures.getPossessive());
+            sink.addFeature("reflex", morphFeatures.getReflex());
+            sink.addFeature("tense", morphFeatures.getTense());
+            sink.addFeature("voice", morphFeatures.getVoice());
+            sink.addFeature("verb_form", morphFeatures.getVerbForm());
+            sink.addFeature("morph_tag", morphFeatures.getValue());
+            sink.endToken();
         }
     }
 
@@ -86,23 +231,17 @@ public class RfTaggerLapps implements ProcessingService {
         IOSpecification requires = new IOSpecification();
         requires.addFormat(Uri.TEXT);
         requires.addFormat(Uri.LIF);
-        requires.addLanguage("cz");
-        requires.addLanguage("de");
-        requires.addLanguage("hu");
-        requires.addLanguage("ru");
-        requires.addLanguage("sk");
-        requires.addLanguage("sl");
+        for (String language : LANGUAGES) {
+            requires.addLanguage(language);
+        }
         requires.setEncoding("UTF-8");
 
         IOSpecification produces = new IOSpecification();
         produces.addFormat(Uri.LAPPS);
         produces.addAnnotation(Uri.TOKEN);
-        produces.addLanguage("cz");
-        produces.addLanguage("de");
-        produces.addLanguage("hu");
-        produces.addLanguage("ru");
-        produces.addLanguage("sk");
-        produces.addLanguage("sl");
+        for (String language : LANGUAGES) {
+            produces.addLanguage(language);
+        }
         produces.setEncoding("UTF-8");
 
         metadata.setRequires(requires);
@@ -116,95 +255,4 @@ public class RfTaggerLapps implements ProcessingService {
     public String getMetadata() {
         return metadata;
     }
-
-    @Override
-    public String execute(String input) {
-        try {
-            String[] lang_text = input.split("; ");
-            System.out.println(lang_text);
-            Data input_text = new Data<>(Uri.TEXT, lang_text[2].trim());
-            Data data = Serializer.parse(input_text.asJson(), Data.class);
-            final String discriminator = data.getDiscriminator();
-            if (discriminator.equals(Uri.ERROR)) {
-                return input;
-            }
-
-            Container container = null;
-            if (discriminator.equals(Uri.TEXT)) {
-                container = new Container();
-                container.setText(data.getPayload().toString());
-            } else if (discriminator.equals(Uri.LAPPS)) {
-                container = new Container((Map) data.getPayload());
-            } else {
-                String message = String.format("Unsupported discriminator type: %s", discriminator);
-                return new Data<String>(Uri.ERROR, message).asJson();
-            }
-
-            View view = container.newView();
-            String text = container.getText();
-            // String[] words = text.trim().split("\\s+");
-            // org.lappsgrid.mate_tools_lapps.MateMorphTaggerLAPPS.setJCas(aLanguage, aText);
-            // System.out.println(jCas.getDocumentLanguage());
-            try {
-
-                // TokenBuilder<Token, Sentence> tb = new TokenBuilder<Token, Sentence>(Token.class,
-                //    Sentence.class);
-                // tb.buildTokens(jCas, aText);
-                String variant = lang_text[1].trim();
-                JCas newCas;
-                if(variant.equals("null"))
-                    newCas = createJcas(lang_text[0], null, lang_text[2].trim());
-                else
-                    newCas = createJcas(lang_text[0], variant, lang_text[2].trim());
-                // System.out.println(ae.getAnalysisEngineMetaData());
-                int id = -1;
-                for (Token tok : JCasUtil.select(newCas, Token.class)) {
-                    int start = tok.getBegin();
-                    int end = tok.getEnd();
-                    Annotation a = view.newAnnotation("tok" + (++id), Uri.TOKEN, start, end);
-                    String word = text.substring(start, end);
-                    a.addFeature(Features.Token.WORD, word);
-                    a.addFeature(Features.Token.LEMMA, tok.getLemmaValue());
-                    a.addFeature(Features.Token.POS, tok.getPosValue());
-                    a.addFeature("pos_mapped", tok.getPos().getType().getShortName());
-                    MorphologicalFeatures morphFeatures = tok.getMorph();
-                    setNonNullFeature(a, "animacy", morphFeatures.getAnimacy());
-                    setNonNullFeature(a, "aspect", morphFeatures.getAspect());
-                    setNonNullFeature(a, "case", morphFeatures.getCase());
-                    setNonNullFeature(a, "definiteness", morphFeatures.getDefiniteness());
-                    setNonNullFeature(a, "degree", morphFeatures.getDegree());
-                    setNonNullFeature(a, "gender", morphFeatures.getGender());
-                    setNonNullFeature(a, "mood", morphFeatures.getMood());
-                    setNonNullFeature(a, "number", morphFeatures.getNumber());
-                    setNonNullFeature(a, "num_type", morphFeatures.getNumType());
-                    setNonNullFeature(a, "person", morphFeatures.getPerson());
-                    setNonNullFeature(a, "pron_type", morphFeatures.getPronType());
-                    setNonNullFeature(a, "possessive", morphFeatures.getPossessive());
-                    setNonNullFeature(a, "reflex", morphFeatures.getReflex());
-                    setNonNullFeature(a, "tense", morphFeatures.getTense());
-                    setNonNullFeature(a, "voice", morphFeatures.getVoice());
-                    setNonNullFeature(a, "verb_form", morphFeatures.getVerbForm());
-                    setNonNullFeature(a, "morph_tag", morphFeatures.getValue());
-
-
-
-                }
-                view.addContains(Uri.TOKEN, this.getClass().getName(), "RfTagger");
-
-                data = new DataContainer(container);
-
-                return data.asPrettyJson();
-
-            } catch (UIMAException e2) {
-                System.out.println("failed");
-                e2.printStackTrace();
-                return "failed";
-            }
-        } catch (PatternSyntaxException e) {
-            String errString = "Invalid input pattern";
-            System.err.println(errString);
-            e.printStackTrace();
-            return errString;
-        }
-    }
 }
@@ -28,6 +28,8 @@ import org.lappsgrid.api.WebService;
 import org.lappsgrid.discriminator.Discriminators;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.rftagger_lapps.RfTaggerLapps;
 import org.lappsgrid.serialization.Data;
 import org.lappsgrid.serialization.DataContainer;
 import org.lappsgrid.serialization.Serializer;
@@ -37,6 +39,7 @@ import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -397,4 +400,62 @@ public class RfTaggerLappsTest
             assertEquals("Token " + i + ": wrong morph tag", morph_tags[i], token.getFeature("morph_tag"));
         }
     }
+
+    @Test
+    public void testBatch()
+            throws Exception
+    {
+        RfTaggerLapps rfTagger = (RfTaggerLapps) service;
+        List<BatchDocument> documents = Arrays.asList(
+                new BatchDocument("d1", "de", null, "Er nahm meine Fackel ."),
+                new BatchDocument("d2", "cz", null, "Vzal mi pochodeň ."),
+                new BatchDocument("d3", "xx", null, "Unknown language ."),
+                new BatchDocument("d4", "de", null, "Und schlug sie ."));
+        Data[] results = rfTagger.executeBatch(documents);
+        assertEquals("Wrong number of results", 4, results.length);
+
+        int[] tokenCounts = {5, 4, 0, 4};
+        for (int i = 0; i < results.length; i++) {
+            if (i == 2) {
+                assertEquals("Unknown language should fail", Discriminators.Uri.ERROR, results[i].getDiscriminator());
+                continue;
+            }
+            assertNotEquals("Document " + i + " failed", Discriminators.Uri.ERROR, results[i].getDiscriminator());
+            Container container = (Container) results[i].getPayload();
+            assertEquals("Text not set correctly", documents.get(i).getText(), container.getText());
+            assertEquals("Wrong token count", tokenCounts[i], container.getViews().get(0).getAnnotations().size());
+        }
+    }
+
+    @Test
+    public void testLifInputKeepsUpstreamTokens()
+            throws Exception
+    {
+        String text = "Er nahm meine Fackel.";
+        Container input = new Container();
+        input.setText(text);
+        input.setLanguage("de");
+        View upstream = input.newView();
+        long[][] offsets = {{0, 2}, {3, 7}, {8, 13}, {14, 20}, {20, 21}};
+        for (int i = 0; i < offsets.length; i++) {
+            upstream.newAnnotation("t" + i, Discriminators.Uri.TOKEN, offsets[i][0], offsets[i][1]);
+        }
+        upstream.newAnnotation("s0", Discriminators.Uri.SENTENCE, 0, 21);
+        upstream.addContains(Discriminators.Uri.TOKEN, "upstream", "tokenizer");
+        upstream.addContains(Discriminators.Uri.SENTENCE, "upstream", "splitter");
+
+        String data = service.execute(new DataContainer(input).asJson());
+        Container container = Serializer.parse(data, DataContainer.class).getPayload();
+        assertEquals("Text not set correctly", text, container.getText());
+        assertEquals("Upstream view not kept", 2, container.getViews().size());
+
+        List<Annotation> annotations = container.getViews().get(1).getAnnotations();
+        assertEquals("Upstream tokenization not used", offsets.length, annotations.size());
+        for (int i = 0; i < offsets.length; i++) {
+            Annotation token = annotations.get(i);
+            assertEquals("Token " + i + ": wrong start", offsets[i][0], token.getStart().longValue());
+            assertEquals("Token " + i + ": wrong end", offsets[i][1], token.getEnd().longValue());
+        }
+        assertEquals("Sentence-final period not tagged", "SYM", annotations.get(4).getFeature(Features.Token.POS));
+    }
 }
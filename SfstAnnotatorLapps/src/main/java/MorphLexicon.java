@@ -0,0 +1,171 @@
+package org.lappsgrid.sfst_annotator_lapps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a lexicon file written by {@link MorphLexiconBuilder}: SFST
+ * readings, with lemma and POS already extracted, for a sorted list of word
+ * forms. The file is memory-mapped, so lookups binary-search the page cache
+ * without reading the file onto the heap, and every JVM on a host that maps
+ * the same file shares its pages. Only the readings of a form that is found
+ * are decoded into objects.
+ *
+ * Layout, all ints big-endian:
+ * <pre>
+ * header      MAGIC, VERSION, forms, readings, featureSets, strings, string bytes
+ * strings     (strings + 1) byte offsets, then the UTF-8 bytes, padded to 4
+ * forms       string id per form, sorted by UTF-8 bytes; then (forms + 1) first reading indexes
+ * featureSets one string id (or -1) per feature name of {@link SfstReading}
+ * readings    morph tag, lemma, POS (string ids or -1) and feature set index
+ * </pre>
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class MorphLexicon {
+
+    static final int MAGIC = 0x53464c58;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 7 * 4;
+    static final int READING_INTS = 4;
+
+    private final ByteBuffer buffer;
+    private final int formCount;
+    private final int readingCount;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final int forms;
+    private final int firstReadings;
+    private final int featureSets;
+    private final int readings;
+
+    private MorphLexicon(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an SFST lexicon file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported SFST lexicon version " + buffer.getInt(4));
+        }
+        formCount = buffer.getInt(8);
+        readingCount = buffer.getInt(12);
+        int featureSetCount = buffer.getInt(16);
+        stringCount = buffer.getInt(20);
+        int stringBytes = buffer.getInt(24);
+        stringOffsets = HEADER_BYTES;
+        stringData = stringOffsets + (stringCount + 1) * 4;
+        forms = stringData + pad(stringBytes);
+        firstReadings = forms + formCount * 4;
+        featureSets = firstReadings + (formCount + 1) * 4;
+        readings = featureSets + featureSetCount * SfstReading.getFeatureCount() * 4;
+        long end = (long) readings + (long) readingCount * READING_INTS * 4;
+        if (end != buffer.capacity()) {
+            throw new IOException("Truncated SFST lexicon: expected " + end + " bytes, found " + buffer.capacity());
+        }
+    }
+
+    public static MorphLexicon open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("SFST lexicon larger than 2 GB: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MorphLexicon(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static int pad(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    /** Number of word forms. */
+    public int size() {
+        return formCount;
+    }
+
+    public int getReadingCount() {
+        return readingCount;
+    }
+
+    /**
+     * The readings of the word form, or {@code null} if the form is not in the
+     * lexicon. A form the transducer did not recognize has an empty array.
+     */
+    public SfstReading[] lookup(String form) {
+        int index = find(form.getBytes(StandardCharsets.UTF_8));
+        if (index < 0) {
+            return null;
+        }
+        int first = buffer.getInt(firstReadings + index * 4);
+        int last = buffer.getInt(firstReadings + (index + 1) * 4);
+        SfstReading[] result = new SfstReading[last - first];
+        for (int r = first; r < last; r++) {
+            result[r - first] = reading(r);
+        }
+        return result;
+    }
+
+    public boolean contains(String form) {
+        return find(form.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    private int find(byte[] key) {
+        int low = 0;
+        int high = formCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(buffer.getInt(forms + mid * 4), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Unsigned byte order, which for UTF-8 is code point order
+    private int compare(int stringId, byte[] key) {
+        int start = stringData + buffer.getInt(stringOffsets + stringId * 4);
+        int length = stringData + buffer.getInt(stringOffsets + (stringId + 1) * 4) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private SfstReading reading(int index) {
+        int at = readings + index * READING_INTS * 4;
+        int featureSet = featureSets + buffer.getInt(at + 12) * SfstReading.getFeatureCount() * 4;
+        String[] features = new String[SfstReading.getFeatureCount()];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = string(buffer.getInt(featureSet + i * 4));
+        }
+        return SfstReading.of(features, string(buffer.getInt(at)), string(buffer.getInt(at + 4)),
+                string(buffer.getInt(at + 8)));
+    }
+
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int start = buffer.getInt(stringOffsets + id * 4);
+        int end = buffer.getInt(stringOffsets + (id + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(stringData + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,232 @@
+package org.lappsgrid.sfst_annotator_lapps;
+
+import org.apache.uima.UIMAException;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EngineLease;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.StageClock;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline tool that runs a word list through an SFST model and writes the
+ * readings as a {@link MorphLexicon} file:
+ *
+ * <pre>
+ * java -cp ... org.lappsgrid.sfst_annotator_lapps.MorphLexiconBuilder de smor-ca words.txt lexicons/
+ * </pre>
+ *
+ * The word list has one form per line (UTF-8); forms with whitespace and
+ * duplicates are skipped. The file is named {@code <language>-<variant>.sfstlex}
+ * so that {@code -Dsfst.lexicon.dir=lexicons/} picks it up. Forms the
+ * transducer does not know are stored with no readings, so they are not sent
+ * to the transducer again either.
+ */
+public class MorphLexiconBuilder {
+
+    // Forms per CAS when analyzing a word list
+    private static final int BATCH_SIZE = 10000;
+
+    private final Map<String, SfstReading[]> entries = new HashMap<>();
+
+    /** Adds a form; a form added twice keeps its first readings. */
+    public MorphLexiconBuilder add(String form, SfstReading[] readings) {
+        entries.putIfAbsent(form, readings);
+        return this;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Runs the forms through the model, {@value #BATCH_SIZE} per CAS, and adds their readings. */
+    public MorphLexiconBuilder analyze(EngineKey key, Iterable<String> forms) throws UIMAException {
+        EnginePool pool = new EnginePool(SfstAnnotatorLapps::createSfstEngine, new EnginePoolConfig().setMaxPerKey(1));
+        AnalysisRunner runner = new AnalysisRunner(1);
+        try (EngineLease lease = pool.lease(key)) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            for (String form : forms) {
+                if (form.isEmpty() || SfstAnnotatorLapps.containsWhitespace(form) || entries.containsKey(form)) {
+                    continue;
+                }
+                batch.add(form);
+                if (batch.size() == BATCH_SIZE) {
+                    SfstAnnotatorLapps.analyzeForms(runner, lease.getEngine(), key.getLanguage(), batch,
+                            new StageClock(), this::add);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                SfstAnnotatorLapps.analyzeForms(runner, lease.getEngine(), key.getLanguage(), batch,
+                        new StageClock(), this::add);
+            }
+        } finally {
+            pool.close();
+        }
+        return this;
+    }
+
+    /** Writes the lexicon, replacing {@code file} only once it is complete. */
+    public void write(Path file) throws IOException {
+        byte[][] forms = new byte[entries.size()][];
+        int f = 0;
+        for (Map.Entry<String, SfstReading[]> entry : entries.entrySet()) {
+            forms[f++] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(forms, MorphLexiconBuilder::compareBytes);
+
+        Strings strings = new Strings();
+        Map<List<String>, Integer> featureSets = new HashMap<>();
+        List<int[]> featureSetList = new ArrayList<>();
+        int[] formIds = new int[forms.length];
+        int[] firstReadings = new int[forms.length + 1];
+        List<int[]> readings = new ArrayList<>();
+        for (int i = 0; i < forms.length; i++) {
+            String form = new String(forms[i], StandardCharsets.UTF_8);
+            formIds[i] = strings.id(form);
+            firstReadings[i] = readings.size();
+            for (SfstReading reading : entries.get(form)) {
+                String[] features = reading.getFeatures();
+                Integer set = featureSets.get(Arrays.asList(features));
+                if (set == null) {
+                    set = featureSetList.size();
+                    featureSets.put(Arrays.asList(features), set);
+                    int[] ids = new int[features.length];
+                    for (int j = 0; j < features.length; j++) {
+                        ids[j] = strings.id(features[j]);
+                    }
+                    featureSetList.add(ids);
+                }
+                readings.add(new int[] {strings.id(reading.getMorphTag()), strings.id(reading.getLemma()),
+                        strings.id(reading.getPos()), set});
+            }
+        }
+        firstReadings[forms.length] = readings.size();
+
+        long stringBytes = strings.offsets.get(strings.offsets.size() - 1);
+        long total = MorphLexicon.HEADER_BYTES + 4L * strings.offsets.size() + MorphLexicon.pad((int) stringBytes)
+                + 4L * (2 * forms.length + 1) + 4L * featureSetList.size() * SfstReading.getFeatureCount()
+                + 4L * readings.size() * MorphLexicon.READING_INTS;
+        if (stringBytes > Integer.MAX_VALUE - 3 || total > Integer.MAX_VALUE) {
+            throw new IOException("Lexicon would exceed 2 GB; split the word list");
+        }
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    1 << 16))) {
+                out.writeInt(MorphLexicon.MAGIC);
+                out.writeInt(MorphLexicon.VERSION);
+                out.writeInt(forms.length);
+                out.writeInt(readings.size());
+                out.writeInt(featureSetList.size());
+                out.writeInt(strings.offsets.size() - 1);
+                out.writeInt((int) stringBytes);
+                for (long offset : strings.offsets) {
+                    out.writeInt((int) offset);
+                }
+                for (byte[] bytes : strings.bytes) {
+                    out.write(bytes);
+                }
+                for (int pad = MorphLexicon.pad((int) stringBytes) - (int) stringBytes; pad > 0; pad--) {
+                    out.write(0);
+                }
+                for (int id : formIds) {
+                    out.writeInt(id);
+                }
+                for (int first : firstReadings) {
+                    out.writeInt(first);
+                }
+                for (int[] features : featureSetList) {
+                    for (int id : features) {
+                        out.writeInt(id);
+                    }
+                }
+                for (int[] reading : readings) {
+                    for (int value : reading) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Lexicon file name of a model, as looked up by {@code SfstAnnotatorLapps}. */
+    public static String fileName(EngineKey key) {
+        return key.getVariant() == null ? key.getLanguage() + ".sfstlex"
+                : key.getLanguage() + "-" + key.getVariant() + ".sfstlex";
+    }
+
+    // Unsigned byte order, matching the lookup in MorphLexicon
+    static int compareBytes(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    // String table: ids in first-use order, null maps to -1
+    private static final class Strings {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<byte[]> bytes = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>(Arrays.asList(0L));
+
+        int id(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                id = bytes.size();
+                ids.put(value, id);
+                bytes.add(encoded);
+                offsets.add(offsets.get(offsets.size() - 1) + encoded.length);
+            }
+            return id;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("Usage: MorphLexiconBuilder <language> <variant> <word list> <output directory>");
+            System.exit(1);
+        }
+        EngineKey key = new EngineKey(args[0], args[1]);
+        MorphLexiconBuilder builder = new MorphLexiconBuilder();
+        try (BufferedReader words = Files.newBufferedReader(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+            List<String> forms = new ArrayList<>();
+            for (String line = words.readLine(); line != null; line = words.readLine()) {
+                forms.add(line.trim());
+            }
+            builder.analyze(key, forms);
+        }
+        Path out = Paths.get(args[3]);
+        Files.createDirectories(out);
+        Path file = out.resolve(fileName(key));
+        builder.write(file);
+        System.out.println("Wrote " + builder.size() + " forms to " + file);
+    }
+}
@@ -3,7 +3,6 @@ package org.lappsgrid.sfst_annotator_lapps;
 import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.morph.MorphologicalFeatures;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.dkpro.core.sfst.SfstAnnotator;
-import de.tudarmstadt.ukp.dkpro.core.testing.TestRunner;
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
@@ -14,16 +13,45 @@ import org.apache.uima.resource.ResourceInitializationException;
 import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
+import org.lappsgrid.morph_analyzer_common.AdmissionConfig;
+import org.lappsgrid.morph_analyzer_common.AdmissionController;
+import org.lappsgrid.morph_analyzer_common.AnalysisRunner;
+import org.lappsgrid.morph_analyzer_common.BatchMorphService;
+import org.lappsgrid.morph_analyzer_common.BoundedCache;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.morph_analyzer_common.EnginePool;
+import org.lappsgrid.morph_analyzer_common.EnginePoolConfig;
+import org.lappsgrid.morph_analyzer_common.MorphAnalyzerService;
+import org.lappsgrid.morph_analyzer_common.ResultCache;
+import org.lappsgrid.morph_analyzer_common.Segmenter;
+import org.lappsgrid.morph_analyzer_common.SharedTypeSystem;
+import org.lappsgrid.morph_analyzer_common.Stage;
+import org.lappsgrid.morph_analyzer_common.StageClock;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.morph_analyzer_common.WhitespaceSegmenter;
+import org.lappsgrid.morph_analyzer_common.WorkerThreads;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
-import org.lappsgrid.vocabulary.Features;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.PatternSyntaxException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
 
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
@@ -32,7 +60,9 @@ import static org.lappsgrid.discriminator.Discriminators.Uri;
 // import org.junit.Assume.*;
 // additional API for metadata
 
-public class SfstAnnotatorLapps implements ProcessingService {
+public class SfstAnnotatorLapps extends MorphAnalyzerService implements ProcessingService, BatchMorphService {
+
+    private static final Logger log = LoggerFactory.getLogger(SfstAnnotatorLapps.class);
 
     private String metadata;
 
@@ -46,19 +76,312 @@ public class SfstAnnotatorLapps implements ProcessingService {
         jCas.setDocumentText(aText);
     }
 
-    private void setNonNullFeature(Annotation a, String featureName, String featureValue){
-        if(featureValue != null){
-            a.addFeature(featureName, featureValue);
+    private static final String[] LANGUAGES = {"de", "it", "tr"};
+
+    private static final EnginePool engines = new EnginePool(SfstAnnotatorLapps::createSfstEngine,
+            EnginePoolConfig.fromSystemProperties("sfst.pool"));
+
+    private static final AnalysisRunner runner = AnalysisRunner.fromSystemProperties("sfst");
+
+    // fst-infl is an external process, so requests mostly wait on its I/O; with Java 21+ they
+    // can run on virtual threads instead of a sized pool
+    private static final boolean virtualThreads = Boolean.getBoolean("sfst.virtualThreads");
+
+    // Bounds concurrent and queued requests per (language, variant); overload is rejected at once
+    private static final AdmissionController admission = new AdmissionController("sfst",
+            AdmissionConfig.fromSystemProperties("sfst.admission").setVirtualThreads(virtualThreads));
+
+    // Resubmitted documents are answered from here; off unless sfst.resultCache.size is set
+    private static final ResultCache resultCache = ResultCache.fromSystemProperties("sfst");
+
+    // Distinct word forms cached per (language, variant)
+    private static final int cacheSize = Integer.getInteger("sfst.cache.size", 50000);
+
+    private static final ConcurrentMap<EngineKey, BoundedCache<String, SfstReading[]>> readingsCaches =
+            new ConcurrentHashMap<>();
+
+    // Precomputed readings of frequent word forms per (language, variant), built with
+    // MorphLexiconBuilder; consulted before the transducer when sfst.lexicon.dir is set
+    private static final String lexiconDir = System.getProperty("sfst.lexicon.dir");
+
+    private static final ConcurrentMap<EngineKey, Optional<MorphLexicon>> lexicons = new ConcurrentHashMap<>();
+
+    // fst-infl runs as a separate process per engine, so the transducer itself cannot be shared
+    // between threads; each worker borrows its own engine while the model file extracted by
+    // DKPro is shared on disk.
+    private static final int parallelWorkers = Integer.getInteger("sfst.parallel.workers",
+            Runtime.getRuntime().availableProcessors());
+
+    private static volatile ExecutorService workers;
+
+    private static ExecutorService getWorkers() {
+        if (workers == null) {
+            synchronized (SfstAnnotatorLapps.class) {
+                if (workers == null) {
+                    workers = WorkerThreads.newExecutor("sfst-worker", parallelWorkers, virtualThreads);
+                }
+            }
+        }
+        return workers;
+    }
+
+    private static void shutdownEngines() {
+        synchronized (SfstAnnotatorLapps.class) {
+            if (workers != null) {
+                workers.shutdownNow();
+                workers = null;
+            }
         }
+        admission.close();
+        engines.close();
+    }
+
+    /**
+     * Stops the batch workers and destroys all pooled SFST engines with their
+     * external processes. The pool is shared by every instance and cannot be
+     * reopened, so this is the bean's destroy method, called once when the web
+     * application is undeployed.
+     */
+    @Override
+    public void shutdown() {
+        shutdownEngines();
     }
 
-    public JCas createJcas(String language, String variant, String document) throws ResourceInitializationException, UIMAException {
-        AnalysisEngine sfst = createEngine(SfstAnnotator.class, SfstAnnotator.PARAM_VARIANT, variant,
+    public static AnalysisEngine createSfstEngine(EngineKey key) throws ResourceInitializationException {
+        return createEngine(SfstAnnotator.class, SharedTypeSystem.get(),
+                SfstAnnotator.PARAM_LANGUAGE, key.getLanguage(),
+                SfstAnnotator.PARAM_VARIANT, key.getVariant(),
                 SfstAnnotator.PARAM_MODE, SfstAnnotator.Mode.ALL,
                 SfstAnnotator.PARAM_PRINT_TAGSET, true);
-        JCas newJcas = TestRunner.runTest(sfst, language, document);
-        // RfTagger.getLogger();
-        return newJcas;
+    }
+
+    @Override
+    public List<String> getLanguages() {
+        return Arrays.asList(LANGUAGES);
+    }
+
+    // Each language has several transducers; warm up the one most requests use
+    @Override
+    protected EngineKey getWarmUpKey(String language) {
+        switch (language) {
+            case "de":
+                return new EngineKey(language, "smor-ca");
+            case "it":
+                return new EngineKey(language, "pippi-ca");
+            case "tr":
+                return new EngineKey(language, "trmorph-ca");
+            default:
+                return super.getWarmUpKey(language);
+        }
+    }
+
+    @Override
+    public EnginePool getEnginePool() {
+        return engines;
+    }
+
+    @Override
+    protected AnalysisRunner getRunner() {
+        return runner;
+    }
+
+    @Override
+    protected AdmissionController getAdmission() {
+        return admission;
+    }
+
+    @Override
+    protected ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    protected String getProducerType() {
+        return "SfstAnnotatorLapps";
+    }
+
+    /**
+     * Batch documents run on {@code sfst.parallel.workers} threads, or each on its own virtual
+     * thread with {@code sfst.virtualThreads}. For full throughput {@code sfst.pool.maxPerKey} should
+     * be at least the number of documents tagged at once.
+     */
+    @Override
+    protected ExecutorService getBatchWorkers() {
+        return getWorkers();
+    }
+
+    @Override
+    protected void addAnnotations(JCas jCas, String text, TokenSink sink) {
+        int id = 0;
+        int sub_id = -1;
+        int old_start = 0;
+        for (MorphologicalFeatures morphFeatures : JCasUtil.select(jCas, MorphologicalFeatures.class)) {
+            int start = morphFeatures.getBegin();
+            int end = morphFeatures.getEnd();
+            if (start != old_start){
+                sub_id = -1;
+                ++id;
+            }
+            sink.startToken(id, ++sub_id, start, end);
+            SfstReading.of(morphFeatures).writeTo(sink, text.substring(start, end));
+            sink.endToken();
+            old_start = start;
+        }
+    }
+
+    /**
+     * SFST analyzes each word form on its own, so readings are cached per form. The
+     * text is only segmented; forms missing from the cache are looked up in the
+     * model's lexicon file, if there is one, and the rest are run through the
+     * transducer once each, one per line. Every token is then written from the
+     * readings found. Without a cache or a lexicon, or when a token contains
+     * whitespace and cannot be looked up on its own line, the whole text goes
+     * through the transducer.
+     */
+    @Override
+    protected void tag(AnalysisEngine engine, EngineKey key, String text, Segmenter segmenter, TokenSink sink,
+            StageClock clock) throws UIMAException {
+        BoundedCache<String, SfstReading[]> cache = getReadingsCache(key);
+        MorphLexicon lexicon = getLexicon(key);
+        if (cache == null && lexicon == null) {
+            super.tag(engine, key, text, segmenter, sink, clock);
+            return;
+        }
+        int[] offsets = runner.segment(engine, key.getLanguage(), text, clock.timed(segmenter), jCas -> {
+            List<Token> tokens = new ArrayList<>(JCasUtil.select(jCas, Token.class));
+            int[] result = new int[tokens.size() * 2];
+            for (int i = 0; i < tokens.size(); i++) {
+                result[2 * i] = tokens.get(i).getBegin();
+                result[2 * i + 1] = tokens.get(i).getEnd();
+            }
+            return result;
+        });
+        int count = offsets.length / 2;
+        String[] words = new String[count];
+        SfstReading[][] readings = new SfstReading[count][];
+        Map<String, List<Integer>> misses = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            words[i] = text.substring(offsets[2 * i], offsets[2 * i + 1]);
+            readings[i] = cache == null ? null : cache.get(words[i]);
+            if (readings[i] == null && lexicon != null) {
+                readings[i] = lexicon.lookup(words[i]);
+                if (readings[i] != null && cache != null) {
+                    cache.put(words[i], readings[i]);
+                }
+            }
+            if (readings[i] == null) {
+                if (containsWhitespace(words[i])) {
+                    super.tag(engine, key, text, segmenter, sink, clock);
+                    return;
+                }
+                misses.computeIfAbsent(words[i], w -> new ArrayList<>()).add(i);
+            }
+        }
+        if (!misses.isEmpty()) {
+            analyzeForms(engine, key, misses, readings, cache, clock);
+        }
+        int id = 0;
+        int old_start = 0;
+        for (int i = 0; i < count; i++) {
+            int start = offsets[2 * i];
+            int end = offsets[2 * i + 1];
+            if (readings[i].length > 0 && start != old_start) {
+                ++id;
+            }
+            for (int sub_id = 0; sub_id < readings[i].length; sub_id++) {
+                sink.startToken(id, sub_id, start, end);
+                readings[i][sub_id].writeTo(sink, words[i]);
+                sink.endToken();
+                old_start = start;
+            }
+        }
+        clock.mark(Stage.ANNOTATE);
+    }
+
+    // Runs the distinct uncached forms through the transducer and caches their readings
+    private void analyzeForms(AnalysisEngine engine, EngineKey key, Map<String, List<Integer>> misses,
+            SfstReading[][] readings, BoundedCache<String, SfstReading[]> cache, StageClock clock)
+            throws UIMAException {
+        analyzeForms(runner, engine, key.getLanguage(), new ArrayList<>(misses.keySet()), clock,
+                (word, formReadings) -> {
+                    if (cache != null) {
+                        cache.put(word, formReadings);
+                    }
+                    for (int index : misses.get(word)) {
+                        readings[index] = formReadings;
+                    }
+                });
+    }
+
+    /**
+     * Runs word forms without whitespace through the transducer, one per line, and
+     * hands each form with its readings (empty if it was not recognized) to the
+     * consumer, in order.
+     */
+    static void analyzeForms(AnalysisRunner runner, AnalysisEngine engine, String language, List<String> forms,
+            StageClock clock, BiConsumer<String, SfstReading[]> consumer) throws UIMAException {
+        runner.run(engine, language, String.join("\n", forms), clock.timed(WhitespaceSegmenter.INSTANCE),
+                jCas -> {
+                    clock.mark(Stage.PROCESS);
+                    Map<Token, Collection<MorphologicalFeatures>> covered =
+                            JCasUtil.indexCovered(jCas, Token.class, MorphologicalFeatures.class);
+                    int form = 0;
+                    for (Token token : JCasUtil.select(jCas, Token.class)) {
+                        Collection<MorphologicalFeatures> features = covered.get(token);
+                        SfstReading[] formReadings = new SfstReading[features == null ? 0 : features.size()];
+                        if (features != null) {
+                            int r = 0;
+                            for (MorphologicalFeatures feature : features) {
+                                formReadings[r++] = SfstReading.of(feature);
+                            }
+                        }
+                        consumer.accept(forms.get(form++), formReadings);
+                    }
+                    return null;
+                });
+    }
+
+    static boolean containsWhitespace(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isWhitespace(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Word form cache of the given model, or {@code null} if caching is disabled
+     * ({@code sfst.cache.size=0}). Hit and miss counts are available on the cache.
+     */
+    public static BoundedCache<String, SfstReading[]> getReadingsCache(EngineKey key) {
+        if (cacheSize <= 0) {
+            return null;
+        }
+        return readingsCaches.computeIfAbsent(key, k -> new BoundedCache<>(cacheSize));
+    }
+
+    /**
+     * Lexicon file of the given model, {@code <language>-<variant>.sfstlex} in
+     * {@code sfst.lexicon.dir}, or {@code null} if there is none or it cannot be read.
+     */
+    public static MorphLexicon getLexicon(EngineKey key) {
+        if (lexiconDir == null) {
+            return null;
+        }
+        return lexicons.computeIfAbsent(key, k -> {
+            Path file = Paths.get(lexiconDir, MorphLexiconBuilder.fileName(k));
+            if (!Files.isRegularFile(file)) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(MorphLexicon.open(file));
+            } catch (IOException | RuntimeException e) {
+                // Cached as absent, so the transducer answers and this is logged once per model
+                log.error("Cannot open SFST lexicon {}, using the transducer for {}", file, k, e);
+                return Optional.empty();
+            }
+        }).orElse(null);
     }
 
     public SfstAnnotatorLapps() throws CASException, ResourceInitializationException, org.apache.uima.UIMAException {
@@ -81,17 +404,17 @@ public class SfstAnnotatorLapps implements ProcessingService {
         IOSpecification requires = new IOSpecification();
         requires.addFormat(Uri.TEXT);
         requires.addFormat(Uri.LIF);
-        requires.addLanguage("de");
-        requires.addLanguage("it");
-        requires.addLanguage("tr");
+        for (String language : LANGUAGES) {
+            requires.addLanguage(language);
+        }
         requires.setEncoding("UTF-8");
 
         IOSpecification produces = new IOSpecification();
         produces.addFormat(Uri.LAPPS);
         produces.addAnnotation(Uri.TOKEN);
-        produces.addLanguage("de");
-        produces.addLanguage("it");
-        produces.addLanguage("tr");
+        for (String language : LANGUAGES) {
+            produces.addLanguage(language);
+        }
         produces.setEncoding("UTF-8");
 
         metadata.setRequires(requires);
@@ -105,133 +428,4 @@ public class SfstAnnotatorLapps implements ProcessingService {
     public String getMetadata() {
         return metadata;
     }
-
-    @Override
-    public String execute(String input) {
-        try {
-            String[] lang_text = input.split("; ");
-            Data input_text = new Data<>(Uri.TEXT, lang_text[2].trim());
-            Data data = Serializer.parse(input_text.asJson(), Data.class);
-            final String discriminator = data.getDiscriminator();
-            if (discriminator.equals(Uri.ERROR)) {
-                return input;
-            }
-
-            Container container = null;
-            if (discriminator.equals(Uri.TEXT)) {
-                container = new Container();
-                container.setText(data.getPayload().toString());
-            } else if (discriminator.equals(Uri.LAPPS)) {
-                container = new Container((Map) data.getPayload());
-            } else {
-                String message = String.format("Unsupported discriminator type: %s", discriminator);
-                return new Data<String>(Uri.ERROR, message).asJson();
-            }
-
-            View view = container.newView();
-            String text = container.getText();
-            // String[] words = text.trim().split("\\s+");
-            // org.lappsgrid.mate_tools_lapps.MateMorphTaggerLAPPS.setJCas(aLanguage, aText);
-            // System.out.println(jCas.getDocumentLanguage());
-            try {
-
-                // TokenBuilder<Token, Sentence> tb = new TokenBuilder<Token, Sentence>(Token.class,
-                //    Sentence.class);
-                // tb.buildTokens(jCas, aText);
-                String variant = lang_text[1].trim();
-                JCas newCas;
-                if(variant.equals("null"))
-                    newCas = createJcas(lang_text[0], null, lang_text[2].trim());
-                else
-                    newCas = createJcas(lang_text[0], variant, lang_text[2].trim());
-                // System.out.println(ae.getAnalysisEngineMetaData());
-                int id = 0;
-                int sub_id = -1;
-                int old_start = 0;
-                for (MorphologicalFeatures morphFeatures : JCasUtil.select(newCas, MorphologicalFeatures.class)) {
-                    int start = morphFeatures.getBegin();
-                    int end = morphFeatures.getEnd();
-                    if (start != old_start){
-                        sub_id = -1;
-                        ++id;
-                    }
-                    Annotation a = view.newAnnotation("tok" + (id) + "_" + (++sub_id), Uri.TOKEN, start, end);
-                    String word = text.substring(start, end);
-                    a.addFeature(Features.Token.WORD, word);
-                    String morph_tag_value = morphFeatures.getValue();
-                    setNonNullFeature(a, "animacy", morphFeatures.getAnimacy());
-                    setNonNullFeature(a, "aspect", morphFeatures.getAspect());
-                    setNonNullFeature(a, "case", morphFeatures.getCase());
-                    setNonNullFeature(a, "definiteness", morphFeatures.getDefiniteness());
-                    setNonNullFeature(a, "degree", morphFeatures.getDegree());
-                    setNonNullFeature(a, "gender", morphFeatures.getGender());
-                    setNonNullFeature(a, "mood", morphFeatures.getMood());
-                    setNonNullFeature(a, "number", morphFeatures.getNumber());
-                    setNonNullFeature(a, "num_type", morphFeatures.getNumType());
-                    setNonNullFeature(a, "person", morphFeatures.getPerson());
-                    setNonNullFeature(a, "pron_type", morphFeatures.getPronType());
-                    setNonNullFeature(a, "possessive", morphFeatures.getPossessive());
-                    setNonNullFeature(a, "reflex", morphFeatures.getReflex());
-                    setNonNullFeature(a, "tense", morphFeatures.getTense());
-                    setNonNullFeature(a, "voice", morphFeatures.getVoice());
-                    setNonNullFeature(a, "verb_form", morphFeatures.getVerbForm());
-                    setNonNullFeature(a, "morph_tag", morph_tag_value);
-
-                    old_start = start;
-                    if(morph_tag_value.contains("<")){
-                        String[] tags = morph_tag_value.split("<");
-                        String lemma = "";
-                        String probable_tag = "";
-                        String last_tagchain = "";
-                        boolean has_end_tag_last = true;
-                        for (int i = 0; i < tags.length; i++) {
-                            while (tags[i].equals("")) i++;
-                            String tag = tags[i];
-                            if ((tag.indexOf(">") != tag.length() - 1) || (tag.contains("^"))) {
-                                String tag_modified = "<" + tag;
-                                if (tag.contains(">"))
-                                    lemma += last_tagchain + tag_modified;
-                                else lemma += last_tagchain + tag;
-                                last_tagchain = "";
-                                has_end_tag_last = false;
-                                // tag = tags[i];
-                            }else{
-                                if(!has_end_tag_last){
-                                    lemma += last_tagchain;
-                                    probable_tag = tag;
-                                    last_tagchain = "<" + tag;
-                                }else{
-                                    last_tagchain += "<" + tag;
-                                    // else last_tagchain += tag;
-                                }
-                                has_end_tag_last = true;
-                            }
-                        }
-                        a.addFeature(Features.Token.LEMMA, lemma);
-                        a.addFeature(Features.Token.POS, "<" + probable_tag);
-                    }else{
-                        a.addFeature(Features.Token.LEMMA, "");
-                        a.addFeature(Features.Token.POS, "");
-                    }
-
-
-                }
-                view.addContains(Uri.TOKEN, this.getClass().getName(), "SfstAnnotatorLapps");
-
-                data = new DataContainer(container);
-
-                return data.asPrettyJson();
-
-            } catch (UIMAException e2) {
-                System.out.println("failed");
-                e2.printStackTrace();
-                return "failed";
-            }
-        } catch (PatternSyntaxException e) {
-            String errString = "Invalid input pattern";
-            System.err.println(errString);
-            e.printStackTrace();
-            return errString;
-        }
-    }
 }
@@ -0,0 +1,92 @@
+package org.lappsgrid.sfst_annotator_lapps;
+
+import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.morph.MorphologicalFeatures;
+import org.lappsgrid.morph_analyzer_common.TokenSink;
+import org.lappsgrid.vocabulary.Features;
+
+/**
+ * One SFST reading of a word form: the morphological features, the raw tag
+ * chain and the lemma and POS derived from it. Readings do not depend on the
+ * token's position or sentence, so they can be cached per word form.
+ */
+public final class SfstReading {
+
+    // Feature names in output order; a reading holds one value (or null) per name
+    private static final String[] FEATURE_NAMES = {"animacy", "aspect", "case", "definiteness", "degree",
+            "gender", "mood", "number", "num_type", "person", "pron_type", "possessive", "reflex", "tense",
+            "voice", "verb_form"};
+
+    private final String[] features;
+    private final String morphTag;
+    private final String lemma;
+    private final String pos;
+
+    private SfstReading(String[] features, String morphTag, String lemma, String pos) {
+        this.features = features;
+        this.morphTag = morphTag;
+        this.lemma = lemma;
+        this.pos = pos;
+    }
+
+    public static SfstReading of(MorphologicalFeatures features) {
+        SfstTagChainParser parser = SfstTagChainParser.get().parse(features.getValue());
+        String[] values = {features.getAnimacy(), features.getAspect(), features.getCase(),
+                features.getDefiniteness(), features.getDegree(), features.getGender(), features.getMood(),
+                features.getNumber(), features.getNumType(), features.getPerson(), features.getPronType(),
+                features.getPossessive(), features.getReflex(), features.getTense(), features.getVoice(),
+                features.getVerbForm()};
+        return new SfstReading(values, features.getValue(), parser.getLemma(), parser.getPos());
+    }
+
+    /**
+     * A reading from stored values, e.g. read back from a {@link MorphLexicon};
+     * {@code features} holds one value per {@link #getFeatureNames() name}.
+     */
+    public static SfstReading of(String[] features, String morphTag, String lemma, String pos) {
+        if (features.length != FEATURE_NAMES.length) {
+            throw new IllegalArgumentException("Expected " + FEATURE_NAMES.length + " feature values, got "
+                    + features.length);
+        }
+        return new SfstReading(features.clone(), morphTag, lemma, pos);
+    }
+
+    public static String[] getFeatureNames() {
+        return FEATURE_NAMES.clone();
+    }
+
+    /** Feature values in {@link #getFeatureNames()} order. */
+    public String[] getFeatures() {
+        return features.clone();
+    }
+
+    String getFeature(int index) {
+        return features[index];
+    }
+
+    static int getFeatureCount() {
+        return FEATURE_NAMES.length;
+    }
+
+    public String getMorphTag() {
+        return morphTag;
+    }
+
+    public String getLemma() {
+        return lemma;
+    }
+
+    public String getPos() {
+        return pos;
+    }
+
+    /** Writes the features of a token with this reading, after its word. */
+    public void writeTo(TokenSink sink, String word) {
+        sink.addFeature(Features.Token.WORD, word);
+        for (int i = 0; i < FEATURE_NAMES.length; i++) {
+            sink.addFeature(FEATURE_NAMES[i], features[i]);
+        }
+        sink.addFeature("morph_tag", morphTag);
+        sink.addFeature(Features.Token.LEMMA, lemma);
+        sink.addFeature(Features.Token.POS, pos);
+    }
+}
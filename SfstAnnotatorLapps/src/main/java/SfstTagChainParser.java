@@ -0,0 +1,131 @@
+package org.lappsgrid.sfst_annotator_lapps;
+
+/**
+ * Splits an SFST analysis such as {@code <CAP>die<+ART><Def><Fem><Dat><Sg>} or
+ * {@code Kran<NN>Ken<NN>Haus<+NN><Neut><Nom><Sg>} into lemma, POS and tags in a
+ * single index-based pass.
+ *
+ * Pieces are the parts between {@code <} characters. A piece ending in its only
+ * {@code >} (and without {@code ^}) is a tag; anything else is lemma text. The
+ * tag right after lemma text is the POS. Tags followed by more lemma text, like
+ * the {@code <NN>} compound boundaries, become part of the lemma. Tags after
+ * the last lemma text do not.
+ *
+ * The parser keeps its buffers between calls and only allocates the result
+ * strings that are asked for. Instances are not thread-safe; use one per thread.
+ */
+public final class SfstTagChainParser {
+
+    private static final ThreadLocal<SfstTagChainParser> perThread =
+            ThreadLocal.withInitial(SfstTagChainParser::new);
+
+    private final StringBuilder lemma = new StringBuilder();
+    private final StringBuilder pending = new StringBuilder();
+    private int[] tags = new int[32];
+    private int tagCount;
+    private String chain;
+    private boolean hasTags;
+    private int posStart;
+    private int posEnd;
+
+    /** Parser for the calling thread. */
+    public static SfstTagChainParser get() {
+        return perThread.get();
+    }
+
+    public SfstTagChainParser parse(String chain) {
+        this.chain = chain;
+        lemma.setLength(0);
+        pending.setLength(0);
+        tagCount = 0;
+        posStart = -1;
+        posEnd = -1;
+        hasTags = chain.indexOf('<') >= 0;
+        if (!hasTags) {
+            return this;
+        }
+        int length = chain.length();
+        boolean tagLast = true;
+        int pieceStart = 0;
+        while (pieceStart <= length) {
+            int pieceEnd = chain.indexOf('<', pieceStart);
+            if (pieceEnd < 0) {
+                pieceEnd = length;
+            }
+            if (pieceEnd > pieceStart) {
+                int firstClose = -1;
+                boolean caret = false;
+                for (int i = pieceStart; i < pieceEnd; i++) {
+                    char c = chain.charAt(i);
+                    if (c == '>') {
+                        if (firstClose < 0) {
+                            firstClose = i;
+                        }
+                    } else if (c == '^') {
+                        caret = true;
+                    }
+                }
+                if (firstClose != pieceEnd - 1 || caret) {
+                    // Lemma text, possibly after a boundary tag such as "NN>Haus"
+                    lemma.append(pending);
+                    if (firstClose >= 0) {
+                        lemma.append('<');
+                    }
+                    lemma.append(chain, pieceStart, pieceEnd);
+                    pending.setLength(0);
+                    tagLast = false;
+                } else {
+                    addTag(pieceStart, pieceEnd - 1);
+                    if (!tagLast) {
+                        lemma.append(pending);
+                        pending.setLength(0);
+                        posStart = pieceStart;
+                        posEnd = pieceEnd;
+                    }
+                    pending.append('<').append(chain, pieceStart, pieceEnd);
+                    tagLast = true;
+                }
+            }
+            pieceStart = pieceEnd + 1;
+        }
+        return this;
+    }
+
+    private void addTag(int start, int end) {
+        if (2 * tagCount + 1 >= tags.length) {
+            int[] grown = new int[tags.length * 2];
+            System.arraycopy(tags, 0, grown, 0, tags.length);
+            tags = grown;
+        }
+        tags[2 * tagCount] = start;
+        tags[2 * tagCount + 1] = end;
+        tagCount++;
+    }
+
+    /** The lemma, with inner boundary tags; empty if the analysis has no tags. */
+    public String getLemma() {
+        return lemma.toString();
+    }
+
+    /** The POS tag with its brackets, e.g. {@code <+NN>}; {@code <} if there is none, empty without tags. */
+    public String getPos() {
+        if (!hasTags) {
+            return "";
+        }
+        // The POS piece always follows a '<'
+        return posStart < 0 ? "<" : chain.substring(posStart - 1, posEnd);
+    }
+
+    /** Number of tags, i.e. pieces that are nothing but a tag. */
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    /** Name of the i-th tag without brackets, e.g. {@code +NN} or {@code Dat}. */
+    public String getTag(int i) {
+        if (i < 0 || i >= tagCount) {
+            throw new IndexOutOfBoundsException("Tag " + i + " of " + tagCount);
+        }
+        return chain.substring(tags[2 * i], tags[2 * i + 1]);
+    }
+}
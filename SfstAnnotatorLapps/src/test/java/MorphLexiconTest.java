@@ -0,0 +1,87 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lappsgrid.sfst_annotator_lapps.MorphLexicon;
+import org.lappsgrid.sfst_annotator_lapps.MorphLexiconBuilder;
+import org.lappsgrid.sfst_annotator_lapps.SfstReading;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MorphLexiconTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SfstReading reading(String morphTag, String lemma, String pos, String grammaticalCase) {
+        String[] features = new String[SfstReading.getFeatureNames().length];
+        features[2] = grammaticalCase;
+        return SfstReading.of(features, morphTag, lemma, pos);
+    }
+
+    private MorphLexicon build(MorphLexiconBuilder builder) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("de-smor-ca.sfstlex");
+        builder.write(file);
+        return MorphLexicon.open(file);
+    }
+
+    @Test
+    public void testReadingsRoundTrip() throws Exception {
+        MorphLexicon lexicon = build(new MorphLexiconBuilder()
+                .add("Arzt", new SfstReading[] {
+                        reading("Arzt<+NN><Masc><Nom><Sg>", "Arzt", "+NN", "Nom"),
+                        reading("Arzt<+NN><Masc><Dat><Sg>", "Arzt", "+NN", "Dat")})
+                .add("Größe", new SfstReading[] {reading("Größe<+NN><Fem><Acc><Sg>", "Größe", "+NN", "Acc")})
+                .add("xyzzy", new SfstReading[0]));
+
+        assertEquals(3, lexicon.size());
+        assertEquals(3, lexicon.getReadingCount());
+        SfstReading[] arzt = lexicon.lookup("Arzt");
+        assertEquals(2, arzt.length);
+        assertEquals("Arzt<+NN><Masc><Dat><Sg>", arzt[1].getMorphTag());
+        assertEquals("Arzt", arzt[1].getLemma());
+        assertEquals("+NN", arzt[1].getPos());
+        assertEquals("Dat", arzt[1].getFeatures()[2]);
+        assertNull(arzt[1].getFeatures()[0]);
+
+        assertEquals("Größe", lexicon.lookup("Größe")[0].getLemma());
+        assertEquals("Unknown forms are stored without readings", 0, lexicon.lookup("xyzzy").length);
+        assertNull(lexicon.lookup("Ärztin"));
+        assertNull(lexicon.lookup(""));
+    }
+
+    @Test
+    public void testEveryFormIsFound() throws Exception {
+        Random random = new Random(42);
+        MorphLexiconBuilder builder = new MorphLexiconBuilder();
+        int[] letters = "abcdeäöüßzĞğışç😀".codePoints().toArray();
+        String[] forms = new String[5000];
+        for (int i = 0; i < forms.length; i++) {
+            StringBuilder form = new StringBuilder();
+            for (int n = 1 + random.nextInt(10); n > 0; n--) {
+                form.appendCodePoint(letters[random.nextInt(letters.length)]);
+            }
+            forms[i] = form.toString();
+            builder.add(forms[i], new SfstReading[] {reading(forms[i] + "<+NN>", forms[i], "+NN", null)});
+        }
+        MorphLexicon lexicon = build(builder);
+        assertEquals(builder.size(), lexicon.size());
+        for (String form : forms) {
+            SfstReading[] readings = lexicon.lookup(form);
+            assertNotNull("Missing " + form, readings);
+            assertEquals(form, readings[0].getLemma());
+        }
+        assertNull(lexicon.lookup("abcdeabcdeabcde"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        Path file = folder.newFile("not-a-lexicon").toPath();
+        Files.write(file, new byte[64]);
+        MorphLexicon.open(file);
+    }
+}
@@ -28,6 +28,10 @@ import org.lappsgrid.api.WebService;
 import org.lappsgrid.discriminator.Discriminators;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
+import org.lappsgrid.morph_analyzer_common.BatchDocument;
+import org.lappsgrid.morph_analyzer_common.BoundedCache;
+import org.lappsgrid.morph_analyzer_common.EngineKey;
+import org.lappsgrid.sfst_annotator_lapps.SfstAnnotatorLapps;
 import org.lappsgrid.serialization.Data;
 import org.lappsgrid.serialization.DataContainer;
 import org.lappsgrid.serialization.Serializer;
@@ -37,6 +41,7 @@ import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -568,4 +573,59 @@ public class SfstAnnotatorLappsTest {
             assertEquals("Token " + ids[i] + ": wrong id", "tok" + ids[i], token.getId());
         }
     }
+
+    @Test
+    public void testParallelPreservesOrder()
+        throws Exception
+    {
+        SfstAnnotatorLapps sfst = (SfstAnnotatorLapps) service;
+        List<BatchDocument> documents = new ArrayList<>();
+        String[] texts = {"Doktor hastane çalış .", "Der Arzt arbeitet im Krankenhaus .", "Il medico che lavora in ospedale ."};
+        String[] languages = {"tr", "de", "it"};
+        String[] variants = {"trmorph-ca", "smor-ca", "pippi-ca"};
+        for (int i = 0; i < 12; i++) {
+            documents.add(new BatchDocument("d" + i, languages[i % 3], variants[i % 3], texts[i % 3]));
+        }
+        Data[] results = sfst.executeParallel(documents);
+        assertEquals("Wrong number of results", documents.size(), results.length);
+        for (int i = 0; i < results.length; i++) {
+            assertNotEquals("Document " + i + " failed", Discriminators.Uri.ERROR, results[i].getDiscriminator());
+            Container container = (Container) results[i].getPayload();
+            assertEquals("Result out of order", texts[i % 3], container.getText());
+
+            Container expected = Serializer.parse(service.execute(languages[i % 3] + "; " + variants[i % 3] + "; " + texts[i % 3]),
+                    DataContainer.class).getPayload();
+            assertEquals("Parallel result differs from sequential result",
+                    expected.getViews().get(0).getAnnotations().size(),
+                    container.getViews().get(0).getAnnotations().size());
+        }
+    }
+
+    @Test
+    public void testRepeatedWordFormsComeFromCache()
+        throws Exception
+    {
+        EngineKey key = new EngineKey("de", "smor-ca");
+        BoundedCache<String, ?> cache = SfstAnnotatorLapps.getReadingsCache(key);
+        String input_string = "de; smor-ca; Der Arzt und der Arzt arbeiten .";
+        String first = service.execute(input_string);
+        long hits = cache.getHits();
+        String second = service.execute(input_string);
+        assertEquals("Cached output differs", first, second);
+        assertTrue("Second request was not served from the cache", cache.getHits() >= hits + 7);
+
+        List<Annotation> annotations = Serializer.parse(first, DataContainer.class).getPayload()
+                .getViews().get(0).getAnnotations();
+        List<Object> firstArzt = new ArrayList<>();
+        List<Object> secondArzt = new ArrayList<>();
+        for (Annotation token : annotations) {
+            if (token.getStart() == 4) {
+                firstArzt.add(token.getFeatures());
+            } else if (token.getStart() == 17) {
+                secondArzt.add(token.getFeatures());
+            }
+        }
+        assertFalse("No readings for Arzt", firstArzt.isEmpty());
+        assertEquals("Repeated form analyzed differently", firstArzt, secondArzt);
+    }
 }
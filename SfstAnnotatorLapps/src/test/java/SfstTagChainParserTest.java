@@ -0,0 +1,103 @@
+import org.junit.Test;
+import org.lappsgrid.sfst_annotator_lapps.SfstTagChainParser;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SfstTagChainParserTest
+{
+    // The split-based lemma/POS extraction SfstAnnotatorLapps used before the parser
+    private static String[] legacy(String morph_tag_value) {
+        if (!morph_tag_value.contains("<")) {
+            return new String[] {"", ""};
+        }
+        String[] tags = morph_tag_value.split("<");
+        String lemma = "";
+        String probable_tag = "";
+        String last_tagchain = "";
+        boolean has_end_tag_last = true;
+        for (int i = 0; i < tags.length; i++) {
+            while (tags[i].equals("")) i++;
+            String tag = tags[i];
+            if ((tag.indexOf(">") != tag.length() - 1) || (tag.contains("^"))) {
+                String tag_modified = "<" + tag;
+                if (tag.contains(">"))
+                    lemma += last_tagchain + tag_modified;
+                else lemma += last_tagchain + tag;
+                last_tagchain = "";
+                has_end_tag_last = false;
+            }else{
+                if(!has_end_tag_last){
+                    lemma += last_tagchain;
+                    probable_tag = tag;
+                    last_tagchain = "<" + tag;
+                }else{
+                    last_tagchain += "<" + tag;
+                }
+                has_end_tag_last = true;
+            }
+        }
+        return new String[] {lemma, "<" + probable_tag};
+    }
+
+    private static void assertSameAsLegacy(SfstTagChainParser parser, String analysis) {
+        String[] expected = legacy(analysis);
+        parser.parse(analysis);
+        assertEquals("Lemma of " + analysis, expected[0], parser.getLemma());
+        assertEquals("POS of " + analysis, expected[1], parser.getPos());
+    }
+
+    @Test
+    public void testCorpusMatchesLegacyExtraction() throws Exception {
+        SfstTagChainParser parser = new SfstTagChainParser();
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/sfst-analyses.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                assertSameAsLegacy(parser, line);
+                count++;
+            }
+        }
+        assertTrue("Corpus not read", count > 100);
+    }
+
+    @Test
+    public void testRandomChainsMatchLegacyExtraction() {
+        SfstTagChainParser parser = new SfstTagChainParser();
+        char[] alphabet = {'a', 'b', '<', '>', '^', '<', '>'};
+        Random random = new Random(42);
+        for (int n = 0; n < 100000; n++) {
+            char[] chain = new char[random.nextInt(12)];
+            for (int i = 0; i < chain.length; i++) {
+                chain[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            assertSameAsLegacy(parser, new String(chain));
+        }
+    }
+
+    @Test
+    public void testStructuredTags() {
+        SfstTagChainParser parser = new SfstTagChainParser().parse("Kran<NN>Ken<NN>Haus<+NN><Neut><Nom><Sg>");
+        assertEquals("Kran<NN>Ken<NN>Haus", parser.getLemma());
+        assertEquals("<+NN>", parser.getPos());
+        assertEquals(4, parser.getTagCount());
+        assertEquals("+NN", parser.getTag(0));
+        assertEquals("Sg", parser.getTag(3));
+
+        parser.parse("<CAP>die<+ART><Def><Fem><Dat><Sg>");
+        assertEquals("<CAP>die", parser.getLemma());
+        assertEquals("<+ART>", parser.getPos());
+        assertEquals("+ART", parser.getTag(0));
+        assertEquals(5, parser.getTagCount());
+
+        parser.parse(".");
+        assertEquals("", parser.getLemma());
+        assertEquals("", parser.getPos());
+        assertEquals(0, parser.getTagCount());
+    }
+}